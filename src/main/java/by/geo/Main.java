@@ -1,6 +1,6 @@
 package by.geo;
 
-import by.geo.cov.CovFunction;
+import by.geo.cov.CovSelection;
 import by.geo.cov.EmpiricalCov;
 import by.geo.grav.GfmRepo;
 import by.geo.lsc.LSqCollocationAdjImpl;
@@ -13,19 +13,15 @@ import by.geo.ref.RefSystem;
 import by.geo.trend.ImpactMatrix;
 import by.geo.trend.RegressionTrend;
 import by.geo.util.CalcOnGrid;
+import by.geo.util.ControlPointReader;
 import by.geo.util.PrognosisNodes;
 import org.apache.commons.math3.util.FastMath;
 import org.jetbrains.annotations.NotNull;
 
-import java.nio.file.Files;
-import java.nio.file.Paths;
 import java.util.Collection;
 import java.util.Set;
 import java.util.function.ToDoubleFunction;
 
-import static java.lang.Double.parseDouble;
-import static java.util.stream.Collectors.toSet;
-
 public class Main {
 
     /**
@@ -56,34 +52,25 @@ public class Main {
         final GeodeticToDoubleFunction geodeticToDouble = new BilinearInterpolator(grid);
 
         /** исходные точки */
-        final Set<ControlPoint> controlPoints = Files
-                .lines(Paths.get("c:/points.dat"))
-                .map(line -> line.replaceAll(",", "."))
-                .map(line -> line.split("\\s++"))
-                .map(raw -> new ControlPoint.Builder(
-                        parseDouble(raw[1]),
-                        parseDouble(raw[2]),
-                        geodeticToDouble)
-                        .setNormalHeight(parseDouble(raw[3]))
-                        .setGeodeticHeight(parseDouble(raw[4]))
-                        .setNormalHeightError(parseDouble(raw[5]))
-                        .setGeodeticHeightError(parseDouble(raw[6])).build())
-                .collect(toSet());
+        final ControlPointSet pointSet = new ControlPointReader().read("c:/points.dat");
+
+        /** остаточные сигналы точек, вычисляемые один раз */
+        final SignalSet signals = SignalSet.of(pointSet, geodeticToDouble);
 
         /** узлы сетки для прогноза */
-        final Set<PrognosisNode> predict = new PrognosisNodes(controlPoints, grid).get();
+        final Set<PrognosisNode> predict = new PrognosisNodes(signals.points(), grid).get();
 
         /**
-         * Определение типа ков. функции, построение эмпирической ковариации,
-         * оценивание параметров ков. функции, нахождение матрицы влияния.
+         * Построение эмпирической ковариации, подбор ков. функций всех типов
+         * и выбор лучшей, нахождение матрицы влияния.
          */
-        final CovFunction.Type ctype = CovFunction.Type.hirvonen;
-        final EmpiricalCov empirical = new EmpiricalCov(controlPoints, ctype, ellipsoid);
+        final CovSelection selection = EmpiricalCov.select(signals, ellipsoid,
+                EmpiricalCov.Fit.correlation, CovSelection.Score.rms);
         final ImpactMatrix impact = new RegressionTrend(1, 1, 1);
 
         /** cреднеквадратическая коллокация */
         final Collection<PrognosisNode> predicted = new LSqCollocationAdjImpl(
-                controlPoints, predict, empirical.covFunction(), ellipsoid, impact)
+                signals, predict, selection.best().tabulated(), ellipsoid, impact)
                 .prognosis();
 
         /** корректировка узлов модели */
@@ -1,48 +1,80 @@
 package by.geo.cov;
 
-import by.geo.math.SphericalDistance;
+import by.geo.math.DistanceMatrix;
+import by.geo.math.PackedSymmetricMatrix;
+import by.geo.math.UnitVectors;
 import by.geo.point.Geodetic;
 import by.geo.ref.Ellipsoid;
-import org.apache.commons.math3.linear.Array2DRowRealMatrix;
-import org.apache.commons.math3.linear.RealMatrix;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.List;
+import java.util.stream.IntStream;
 
 /**
  * Автоковариационная матрица.
+ *
+ * <p>Матрица симметрична, поэтому вычисляется и хранится только верхний
+ * треугольник ({@link PackedSymmetricMatrix}). Треугольник делится на
+ * квадратные блоки, которые заполняются параллельно в общем пуле
+ * {@link java.util.concurrent.ForkJoinPool}. Расстояния блока вычисляются
+ * по единичным векторам, общим для набора точек
+ * ({@link DistanceMatrix#vectors()}); матрица расстояний не строится,
+ * чтобы не держать в памяти второй треугольник рядом с ковариациями.</p>
  */
 public class AutoCovMatrix implements CovMatrix {
 
+    /**
+     * Размер блока.
+     */
+    private static final int TILE = 128;
+
     private final @NotNull CovFunction covFun;
     private final @NotNull List<? extends Geodetic> list;
-    private final @NotNull SphericalDistance sphericalDistance;
+    private final @NotNull Ellipsoid ell;
 
     public AutoCovMatrix(final @NotNull List<? extends Geodetic> list,
                          final @NotNull CovFunction covFun, @NotNull final Ellipsoid ell) {
         this.covFun = covFun;
         this.list = list;
-        this.sphericalDistance = new SphericalDistance(ell);
+        this.ell = ell;
     }
 
     @Override
     @NotNull
-    public RealMatrix covMatrix() {
+    public PackedSymmetricMatrix covMatrix() {
         final int size = list.size();
-        final RealMatrix Ctt = new Array2DRowRealMatrix(size, size);
-
-        for (int i = 0; i < size; i++) {
-            for (int j = i; j < size; j++) {
-                if (i != j) {
-                    final double value = covFun
-                            .covariance(sphericalDistance
-                                    .applyAsDouble(list.get(i), list.get(j)));
-                    Ctt.setEntry(i, j, value);
-                    Ctt.setEntry(j, i, value);
-                } else
-                    Ctt.setEntry(i, j, covFun.variance());
+        final PackedSymmetricMatrix Ctt = new PackedSymmetricMatrix(size);
+
+        final UnitVectors vectors = DistanceMatrix.of(list, ell).vectors();
+
+        // блоки верхнего треугольника: (bi, bj), bj >= bi
+        final int tiles = (size + TILE - 1) / TILE;
+        final int[] tileRow = new int[tiles * (tiles + 1) / 2];
+        final int[] tileCol = new int[tileRow.length];
+        for (int bi = 0, t = 0; bi < tiles; bi++) {
+            for (int bj = bi; bj < tiles; bj++, t++) {
+                tileRow[t] = bi;
+                tileCol[t] = bj;
             }
         }
+
+        final double[] data = Ctt.data();
+        final double variance = covFun.variance();
+        IntStream.range(0, tileRow.length).parallel().forEach(t -> {
+            final int i0 = tileRow[t] * TILE, j0 = tileCol[t] * TILE;
+            final int i1 = Math.min(size, i0 + TILE), j1 = Math.min(size, j0 + TILE);
+            final double[] row = new double[TILE];
+            for (int i = i0; i < i1; i++) {
+                final int from = Math.max(j0, i);
+                final int offset = Ctt.rowOffset(i) + (from - i);
+                vectors.row(i, from, j1, row);
+                covFun.covariance(row, row, j1 - from);
+                System.arraycopy(row, 0, data, offset, j1 - from);
+                if (from == i) {
+                    data[offset] = variance;
+                }
+            }
+        });
         return Ctt;
     }
 }
@@ -5,12 +5,18 @@ import org.jetbrains.annotations.NotNull;
 
 /**
  * Ковариационная функция.
+ *
+ * <p>Кроме дисперсии и расстояния корреляции функция может иметь
+ * самородок (nugget) - некоррелированную составляющую, которая входит
+ * только в ковариацию точки с самой собой и добавляется к дисперсиям
+ * ошибок исходных точек.</p>
  */
 public class CovFunction {
 
     private final @NotNull CovFunction.Type type;
-    private final double variance;
+    private double variance;
     private double correlDistance;
+    private double nugget;
 
     CovFunction(@NotNull final CovFunction.Type type, final double variance) {
         this.type = type;
@@ -26,6 +32,72 @@ public class CovFunction {
         return type.covariance(distance, correlDistance, variance);
     }
 
+    /**
+     * Ковариации для массива расстояний.
+     *
+     * @param distance расстояния
+     * @param out      массив ковариаций; может совпадать с {@code distance}
+     * @throws IllegalArgumentException если {@code out} короче {@code distance}
+     */
+    public void covariance(@NotNull final double[] distance, @NotNull final double[] out) {
+        covariance(distance, out, distance.length);
+    }
+
+    /**
+     * Ковариации для первых {@code n} расстояний массива.
+     *
+     * @param distance расстояния
+     * @param out      массив ковариаций; может совпадать с {@code distance}
+     * @param n        число расстояний
+     * @throws IllegalArgumentException если массивы короче {@code n}
+     */
+    public void covariance(@NotNull final double[] distance, @NotNull final double[] out,
+                           final int n) {
+        if (n < 0 || distance.length < n || out.length < n) {
+            throw new IllegalArgumentException("arrays length is not valid");
+        }
+        for (int k = 0; k < n; k++) {
+            out[k] = covariance(distance[k]);
+        }
+    }
+
+    /**
+     * Производная ковариации по расстоянию.
+     *
+     * @return производная ковариации
+     */
+    public double derivative(final double distance) {
+        return type.derivative(distance, correlDistance, variance);
+    }
+
+    /**
+     * Табличная ковариационная функция того же типа с теми же параметрами.
+     *
+     * <p>Форма функции табулируется один раз и вычисляется кубическим
+     * эрмитовым сплайном, без экспонент и степеней.</p>
+     *
+     * @return табличная функция с относительной ошибкой не более {@code 1e-10}
+     */
+    @NotNull
+    public CovFunction tabulated() {
+        return tabulated(TabulatedCovFunction.ERROR);
+    }
+
+    /**
+     * Табличная ковариационная функция того же типа с теми же параметрами.
+     *
+     * @param relError допустимая относительная ошибка
+     * @return табличная функция
+     * @throws IllegalArgumentException если {@code relError} не в [1e-13, 1e-3]
+     */
+    @NotNull
+    public CovFunction tabulated(final double relError) {
+        final CovFunction f = new TabulatedCovFunction(type, variance, relError);
+        f.setCorrelDistance(correlDistance);
+        f.setNugget(nugget);
+        return f;
+    }
+
     /**
      * Расстояние корреляции.
      *
@@ -44,10 +116,27 @@ public class CovFunction {
         return variance;
     }
 
+    /**
+     * Самородок: некоррелированная составляющая дисперсии.
+     *
+     * @return самородок; 0, если не оценивался
+     */
+    public double nugget() {
+        return nugget;
+    }
+
     void setCorrelDistance(final double correlDistance) {
         this.correlDistance = correlDistance;
     }
 
+    void setVariance(final double variance) {
+        this.variance = variance;
+    }
+
+    void setNugget(final double nugget) {
+        this.nugget = nugget;
+    }
+
     @NotNull
     public CovFunction.Type type() {
         return type;
@@ -64,6 +153,18 @@ public class CovFunction {
                 final double t = distance / correlDistance;
                 return variance * (1 + t) * FastMath.exp(-t);
             }
+
+            @Override
+            public double derivative(final double distance,
+                                     final double correlDistance, final double variance) {
+                final double t = distance / correlDistance;
+                return -variance * t * FastMath.exp(-t) / correlDistance;
+            }
+
+            @Override
+            double range() {
+                return 48;
+            }
         },
 
         gaussMarkov3 {
@@ -74,6 +175,18 @@ public class CovFunction {
                 final double t2 = FastMath.pow(t, 2);
                 return variance * (1 + t + t2 / 3) * FastMath.exp(-t);
             }
+
+            @Override
+            public double derivative(final double distance,
+                                     final double correlDistance, final double variance) {
+                final double t = distance / correlDistance;
+                return -variance * t * (1 + t) / 3 * FastMath.exp(-t) / correlDistance;
+            }
+
+            @Override
+            double range() {
+                return 48;
+            }
         },
 
         gaussian {
@@ -83,6 +196,18 @@ public class CovFunction {
                 final double t = FastMath.pow(distance / correlDistance, 2);
                 return variance * FastMath.exp(-t);
             }
+
+            @Override
+            public double derivative(final double distance,
+                                     final double correlDistance, final double variance) {
+                final double t = distance / correlDistance;
+                return -2 * variance * t * FastMath.exp(-t * t) / correlDistance;
+            }
+
+            @Override
+            double range() {
+                return 6;
+            }
         },
 
         hirvonen {
@@ -92,9 +217,34 @@ public class CovFunction {
                 final double t = FastMath.pow(distance / correlDistance, 2);
                 return variance / (1 + t);
             }
+
+            @Override
+            public double derivative(final double distance,
+                                     final double correlDistance, final double variance) {
+                final double t = distance / correlDistance;
+                final double q = 1 + t * t;
+                return -2 * variance * t / (q * q) / correlDistance;
+            }
+
+            @Override
+            double range() {
+                return 64;
+            }
         };
 
         public abstract double covariance(final double distance,
                                           final double correlDistance, final double variance);
+
+        /**
+         * Производная ковариации по расстоянию.
+         */
+        public abstract double derivative(final double distance,
+                                          final double correlDistance, final double variance);
+
+        /**
+         * Отношение расстояния к расстоянию корреляции, до которого
+         * функция табулируется; дальше она вычисляется точно.
+         */
+        abstract double range();
     }
 }
\ No newline at end of file
@@ -0,0 +1,138 @@
+package by.geo.cov;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Результат выбора ковариационной функции: функции всех типов,
+ * подобранные по одной эмпирической ковариации, упорядоченные
+ * по возрастанию оценки.
+ *
+ * @see EmpiricalCov#select
+ */
+public final class CovSelection {
+
+    @NotNull
+    private final List<Candidate> candidates;
+    @NotNull
+    private final Score score;
+
+    CovSelection(@NotNull final List<Candidate> candidates, @NotNull final Score score) {
+        if (candidates.isEmpty()) {
+            throw new IllegalArgumentException("candidates is not valid");
+        }
+        final List<Candidate> sorted = new ArrayList<>(candidates);
+        sorted.sort(Comparator.comparingDouble(score::of));
+        this.candidates = Collections.unmodifiableList(sorted);
+        this.score = score;
+    }
+
+    /**
+     * @return функция с наименьшей оценкой
+     */
+    @NotNull
+    public CovFunction best() {
+        return candidates.get(0).covFunction();
+    }
+
+    /**
+     * @return подобранные функции, лучшая первой
+     */
+    @NotNull
+    public List<Candidate> candidates() {
+        return candidates;
+    }
+
+    /**
+     * @return оценка, по которой сравнивались функции
+     */
+    @NotNull
+    public Score score() {
+        return score;
+    }
+
+    /**
+     * Таблица сравнения: тип, параметры и оценки каждой функции.
+     */
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder(String.format(Locale.ROOT,
+                "%-12s %14s %12s %14s %14s %14s%n",
+                "type", "variance", "correl", "nugget", "rms", "cv"));
+        for (Candidate c : candidates) {
+            final CovFunction f = c.covFunction();
+            sb.append(String.format(Locale.ROOT, "%-12s %14.6e %12.6f %14.6e %14.6e %14.6e%n",
+                    f.type(), f.variance(), f.correlDistance(), f.nugget(), c.rms(), c.cv()));
+        }
+        sb.append("best: ").append(best().type()).append(" by ").append(score);
+        return sb.toString();
+    }
+
+    /**
+     * Оценка для сравнения функций.
+     */
+    public enum Score {
+        /**
+         * Среднее квадратическое отклонение от эмпирических ковариаций.
+         */
+        rms {
+            @Override
+            double of(@NotNull final Candidate c) {
+                return c.rms();
+            }
+        },
+
+        /**
+         * Перекрестная проверка: отклонение каждого интервала от функции,
+         * подобранной без него.
+         */
+        crossValidation {
+            @Override
+            double of(@NotNull final Candidate c) {
+                return Double.isNaN(c.cv()) ? c.rms() : c.cv();
+            }
+        };
+
+        abstract double of(@NotNull Candidate c);
+    }
+
+    /**
+     * Подобранная функция и ее оценки.
+     */
+    public static final class Candidate {
+        @NotNull
+        private final CovFunction covFunction;
+        private final double rms, cv;
+
+        Candidate(@NotNull final CovFunction covFunction, final double rms, final double cv) {
+            this.covFunction = covFunction;
+            this.rms = rms;
+            this.cv = cv;
+        }
+
+        @NotNull
+        public CovFunction covFunction() {
+            return covFunction;
+        }
+
+        /**
+         * @return среднее квадратическое отклонение от эмпирических ковариаций
+         */
+        public double rms() {
+            return rms;
+        }
+
+        /**
+         * @return оценка перекрестной проверки или {@code NaN}, если
+         * она не вычислялась
+         */
+        public double cv() {
+            return cv;
+        }
+    }
+}
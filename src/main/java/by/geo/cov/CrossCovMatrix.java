@@ -1,6 +1,7 @@
 package by.geo.cov;
 
-import by.geo.math.SphericalDistance;
+import by.geo.math.DistanceMatrix;
+import by.geo.math.UnitVectors;
 import by.geo.point.Geodetic;
 import by.geo.ref.Ellipsoid;
 import org.apache.commons.math3.linear.Array2DRowRealMatrix;
@@ -8,16 +9,22 @@ import org.apache.commons.math3.linear.RealMatrix;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.List;
+import java.util.stream.IntStream;
 
 /**
  * Кросс-ковариационная матрица.
+ *
+ * <p>Строки матрицы заполняются параллельно; расстояния строки
+ * вычисляются пакетом по {@link UnitVectors}: для исходных точек -
+ * общим для набора ({@link DistanceMatrix#vectors()}), для точек
+ * прогноза - собственным, без матрицы расстояний прогноза.</p>
  */
 public class CrossCovMatrix implements CovMatrix {
 
     private final @NotNull CovFunction covFun;
     private final @NotNull List<? extends Geodetic> base;
     private final @NotNull List<? extends Geodetic> pred;
-    private final @NotNull SphericalDistance sphericalDistance;
+    private final @NotNull Ellipsoid ell;
 
     public CrossCovMatrix(final @NotNull List<? extends Geodetic> pred,
                           final @NotNull List<? extends Geodetic> base,
@@ -26,7 +33,7 @@ public class CrossCovMatrix implements CovMatrix {
         this.covFun = covFun;
         this.base = base;
         this.pred = pred;
-        this.sphericalDistance = new SphericalDistance(ell);
+        this.ell = ell;
     }
 
     /**
@@ -37,16 +44,15 @@ public class CrossCovMatrix implements CovMatrix {
     @Override
     @NotNull
     public RealMatrix covMatrix() {
-        final RealMatrix Cst = new Array2DRowRealMatrix(pred.size(),
-                base.size());
+        final UnitVectors s = new UnitVectors(pred, ell);
+        final UnitVectors t = DistanceMatrix.of(base, ell).vectors();
+        final double[][] Cst = new double[pred.size()][base.size()];
 
-        for (int i = 0; i < pred.size(); i++) {
-            for (int j = 0; j < base.size(); j++) {
-                final double value = covFun.covariance(sphericalDistance
-                        .applyAsDouble(pred.get(i), base.get(j)));
-                Cst.setEntry(i, j, value);
-            }
-        }
-        return Cst;
+        IntStream.range(0, pred.size()).parallel().forEach(i -> {
+            final double[] row = Cst[i];
+            t.row(s, i, row);
+            covFun.covariance(row, row);
+        });
+        return new Array2DRowRealMatrix(Cst, false);
     }
 }
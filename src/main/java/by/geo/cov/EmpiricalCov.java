@@ -1,17 +1,42 @@
 package by.geo.cov;
 
-import by.geo.math.SphericalDistance;
+import by.geo.math.DistanceMatrix;
+import by.geo.math.SphereTree;
+import by.geo.math.UnitVectors;
 import by.geo.point.ControlPoint;
+import by.geo.point.Geodetic;
+import by.geo.point.SignalSet;
 import by.geo.ref.Ellipsoid;
+import org.apache.commons.math3.analysis.UnivariateFunction;
+import org.apache.commons.math3.distribution.NormalDistribution;
+import org.apache.commons.math3.fitting.leastsquares.LeastSquaresBuilder;
+import org.apache.commons.math3.fitting.leastsquares.LeastSquaresProblem;
+import org.apache.commons.math3.fitting.leastsquares.LevenbergMarquardtOptimizer;
+import org.apache.commons.math3.fitting.leastsquares.MultivariateJacobianFunction;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.DiagonalMatrix;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.RealVector;
+import org.apache.commons.math3.optim.MaxEval;
+import org.apache.commons.math3.optim.nonlinear.scalar.GoalType;
+import org.apache.commons.math3.optim.univariate.BrentOptimizer;
+import org.apache.commons.math3.optim.univariate.SearchInterval;
+import org.apache.commons.math3.optim.univariate.UnivariateObjectiveFunction;
+import org.apache.commons.math3.optim.univariate.UnivariatePointValuePair;
 import org.apache.commons.math3.stat.StatUtils;
 import org.apache.commons.math3.util.FastMath;
 import org.apache.commons.math3.util.Pair;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
-import java.util.function.Predicate;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * Эмпирическая ковариация.
@@ -23,14 +48,32 @@ public class EmpiricalCov {
      */
     private final static double EPS = 1E-3;
 
+    /**
+     * Число значений грубого просмотра расстояния корреляции.
+     */
+    private final static int SCAN = 32;
+
+    /**
+     * Наибольшее число вычислений при уточнении.
+     */
+    private final static int MAX_EVAL = 200;
+
+    /**
+     * Число точек, начиная с которого пары по умолчанию выбираются
+     * случайно ({@link Sampling}).
+     */
+    private final static int SAMPLING_THRESHOLD = 20_000;
+
     private final double minD, maxD;
-    private final @NotNull List<ControlPoint> list;
+    private final @NotNull SignalSet signals;
+    private final @NotNull List<Geodetic> list;
     private final int size;
+    private final double variance;
     private final @NotNull CovFunction foo;
-    private final @NotNull SphericalDistance sphericalDistance;
-    private final @NotNull List<Sample>
-            samples = new ArrayList<>(),
-            data = new ArrayList<>();
+    private final @NotNull Ellipsoid ell;
+    private final @NotNull DistanceMatrix distances;
+    private final @NotNull SphereTree tree;
+    private final @NotNull List<Sample> data = new ArrayList<>();
 
     /**
      * Пространственная эмпирическая ковариация.
@@ -38,145 +81,737 @@ public class EmpiricalCov {
     public EmpiricalCov(@NotNull final Collection<ControlPoint> controlPoints,
                         @NotNull final CovFunction.Type fooType,
                         @NotNull final Ellipsoid ell) {
+        this(SignalSet.of(controlPoints), fooType, ell);
+    }
+
+    /**
+     * Пространственная эмпирическая ковариация по набору сигналов;
+     * оценивается только расстояние корреляции.
+     */
+    public EmpiricalCov(@NotNull final SignalSet signals,
+                        @NotNull final CovFunction.Type fooType,
+                        @NotNull final Ellipsoid ell) {
+        this(signals, fooType, ell, Fit.correlation);
+    }
+
+    /**
+     * Пространственная эмпирическая ковариация по набору сигналов.
+     * Начиная с 20000 точек пары выбираются случайно с настройками
+     * {@link Sampling} по умолчанию.
+     *
+     * @param signals сигналы исходных точек
+     * @param fooType тип ковариационной функции
+     * @param ell     эллипсоид
+     * @param fit     оцениваемые параметры
+     */
+    public EmpiricalCov(@NotNull final SignalSet signals,
+                        @NotNull final CovFunction.Type fooType,
+                        @NotNull final Ellipsoid ell,
+                        @NotNull final Fit fit) {
+        this(signals, fooType, ell, fit,
+                signals.size() < SAMPLING_THRESHOLD ? null : new Sampling());
+    }
+
+    /**
+     * Пространственная эмпирическая ковариация по набору сигналов.
+     *
+     * @param signals  сигналы исходных точек
+     * @param fooType  тип ковариационной функции
+     * @param ell      эллипсоид
+     * @param fit      оцениваемые параметры
+     * @param sampling настройки случайного выбора пар; {@code null} -
+     *                 учитываются все пары
+     */
+    public EmpiricalCov(@NotNull final SignalSet signals,
+                        @NotNull final CovFunction.Type fooType,
+                        @NotNull final Ellipsoid ell,
+                        @NotNull final Fit fit,
+                        @Nullable final Sampling sampling) {
 
-        sphericalDistance = new SphericalDistance(ell);
-        list = new ArrayList<>(controlPoints);
-        size = controlPoints.size();
+        this.signals = signals;
+        this.ell = ell;
+        list = signals.points();
+        distances = DistanceMatrix.of(list, ell);
+        size = signals.size();
+        tree = new SphereTree(list, ell);
+        variance = StatUtils.variance(signals.signals());
 
         minD = minDist();
-        maxD = aveDist();
+        if (sampling == null) {
+            distances.compute();
+            maxD = aveDist();
+            calculate();
+        } else {
+            final int[] order = sampling.order(size);
+            maxD = aveDist(order);
+            sample(sampling, order);
+        }
+        foo = fit(fooType, fit, data);
+    }
+
+    /**
+     * Выбор ковариационной функции: эмпирическая ковариация строится
+     * один раз, функции всех типов подбираются по ней параллельно
+     * и сравниваются по выбранной оценке.
+     *
+     * @param signals сигналы исходных точек
+     * @param ell     эллипсоид
+     * @param fit     оцениваемые параметры
+     * @param score   оценка для сравнения функций
+     * @return функции всех типов, упорядоченные по оценке
+     */
+    @NotNull
+    public static CovSelection select(@NotNull final SignalSet signals,
+                                      @NotNull final Ellipsoid ell,
+                                      @NotNull final Fit fit,
+                                      @NotNull final CovSelection.Score score) {
+        return select(signals, ell, fit, score,
+                signals.size() < SAMPLING_THRESHOLD ? null : new Sampling());
+    }
 
-        foo = new CovFunction(fooType, calcVariance());
-        calculate();
-        findOptimalParam();
+    /**
+     * Выбор ковариационной функции с заданным выбором пар.
+     *
+     * @param signals  сигналы исходных точек
+     * @param ell      эллипсоид
+     * @param fit      оцениваемые параметры
+     * @param score    оценка для сравнения функций
+     * @param sampling настройки случайного выбора пар; {@code null} -
+     *                 учитываются все пары
+     * @return функции всех типов, упорядоченные по оценке
+     */
+    @NotNull
+    public static CovSelection select(@NotNull final SignalSet signals,
+                                      @NotNull final Ellipsoid ell,
+                                      @NotNull final Fit fit,
+                                      @NotNull final CovSelection.Score score,
+                                      @Nullable final Sampling sampling) {
+        final CovFunction.Type[] types = CovFunction.Type.values();
+        final EmpiricalCov empirical = new EmpiricalCov(signals, types[0], ell, fit, sampling);
+        final List<CovSelection.Candidate> candidates = Arrays.stream(types).parallel()
+                .map(type -> {
+                    final CovFunction foo = type == types[0]
+                            ? empirical.foo : empirical.fit(type, fit, empirical.data);
+                    final double cv = score == CovSelection.Score.crossValidation
+                            ? empirical.crossValidation(type, fit) : Double.NaN;
+                    return new CovSelection.Candidate(foo, getSqSum(foo, empirical.data), cv);
+                })
+                .collect(Collectors.toList());
+        return new CovSelection(candidates, score);
     }
 
     public CovFunction covFunction() {
         return foo;
     }
 
-    private double calcVariance() {
-        final double[] array = list.parallelStream()
-                .mapToDouble(x -> x.signal().value()).toArray();
-        return StatUtils.variance(array);
+    /**
+     * Подбор функции заданного типа по эмпирическим ковариациям.
+     */
+    @NotNull
+    private CovFunction fit(@NotNull final CovFunction.Type type, @NotNull final Fit fit,
+                            @NotNull final List<Sample> data) {
+        final CovFunction foo = new CovFunction(type, variance);
+        findOptimalParam(foo, data);
+        if (fit != Fit.correlation) {
+            fitLeastSquares(foo, data, fit == Fit.nugget);
+        }
+        return foo;
     }
 
+    /**
+     * Перекрестная проверка с исключением одного интервала: функция
+     * подбирается без интервала и сравнивается с его ковариацией.
+     *
+     * @return среднее квадратическое взвешенное отклонение исключенных интервалов
+     */
+    private double crossValidation(@NotNull final CovFunction.Type type, @NotNull final Fit fit) {
+        if (data.size() < 2) {
+            return Double.NaN;
+        }
+        final double sum = IntStream.range(0, data.size()).parallel()
+                .mapToDouble(k -> {
+                    final List<Sample> rest = new ArrayList<>(data);
+                    final Sample out = rest.remove(k);
+                    final CovFunction foo = fit(type, fit, rest);
+                    return out.getWeight()
+                            * FastMath.pow(out.getValue() - foo.covariance(out.getDistance()), 2);
+                }).sum();
+        return FastMath.sqrt(sum / totalWeight(data));
+    }
+
+    /**
+     * Расчет эмпирических ковариаций по интервалам расстояний
+     * {@code (k * minD, (k + 1) * minD]} за один проход по парам точек.
+     *
+     * <p>Строки пар обрабатываются параллельно; каждый поток накапливает
+     * по интервалам сумму произведений, сумму расстояний и число пар,
+     * накопители объединяются в конце. Совпадающие точки (нулевое
+     * расстояние) и пустые интервалы не учитываются.</p>
+     */
     private void calculate() {
-        final double ave = StatUtils.mean(list.parallelStream()
-                .mapToDouble(x -> x.signal().value()).toArray());
-
-        /** расчет эмпирических ковариаций */
-        double dist, mult;
-
-        for (int p = 0; p < size; p++) {
-            for (int i = p; i < size; i++) {
-                final ControlPoint a = list.get(p);
-                final ControlPoint b = list.get(i);
-
-                dist = sphericalDistance.applyAsDouble(a, b);
-                if (i == p) {
-                    mult = FastMath.pow(a.signal().value() - ave, 2);
-                } else {
-                    mult = (a.signal().value() - ave)
-                            * (b.signal().value() - ave);
-                }
-                samples.add(new Sample(dist, mult));
+        final double ave = StatUtils.mean(signals.signals());
+        final double[] edges = edges();
+        final int bins = edges.length - 1;
+
+        final Bins sum = IntStream.range(0, size).parallel().collect(
+                () -> new Bins(bins, size),
+                (acc, p) -> {
+                    final double[] row = acc.row;
+                    final double vp = signals.signal(p) - ave;
+                    distances.row(p, p + 1, size, row);
+                    for (int i = p + 1; i < size; i++) {
+                        final double dist = row[i - p - 1];
+                        if (!(dist > 0.0 && dist <= edges[bins])) {
+                            continue;
+                        }
+                        acc.add(bin(edges, dist), dist, vp * (signals.signal(i) - ave));
+                    }
+                },
+                Bins::merge);
+
+        for (int k = 0; k < bins; k++) {
+            if (sum.count[k] > 0) {
+                data.add(new Sample(sum.distance[k] / sum.count[k], sum.value[k] / sum.count[k], 1.0));
             }
         }
+    }
 
-        /** Разбиение на интервалы. */
-        double start = 0.0;
-        double fin = minD;
+    /**
+     * Оценка ковариаций интервалов по случайной выборке пар.
+     *
+     * <p>Пары выбираются кустами: для точки-якоря берутся все ее пары,
+     * попадающие в интервалы, и якоря добавляются раундами, число
+     * которых удваивается. Выборка расслоена по расстоянию: пары якоря
+     * ищутся по пространственному индексу только до внешней границы
+     * дальнего интервала, еще не достигшего точности, поэтому ближние
+     * интервалы, где пар на точку мало, продолжают уточняться дешево,
+     * а дальние перестают запрашиваться, как только достигли
+     * точности.</p>
+     *
+     * <p>Ковариация интервала - отношение суммы произведений к числу пар
+     * по всем якорям (оценка отношением), ее дисперсия оценивается по
+     * разбросу якорей с поправкой на конечную совокупность. Интервал
+     * достигает точности, когда полуширина доверительного интервала
+     * не больше {@code tolerance * variance}. Если якоря исчерпаны,
+     * результат совпадает с полным проходом.</p>
+     *
+     * <p>Вес интервала обратен сумме квадратов его стандартной ошибки
+     * и целевой ошибки {@code halfWidth / z}: интервалы, оцененные
+     * точнее цели, не получают преимущества более чем вдвое, а при
+     * исчерпанных якорях веса равны, как в полном проходе.</p>
+     */
+    private void sample(@NotNull final Sampling sampling, @NotNull final int[] order) {
+        final double ave = StatUtils.mean(signals.signals());
+        final double[] edges = edges();
+        final int bins = edges.length - 1;
+        final UnitVectors vectors = distances.vectors();
+        final double z = sampling.quantile();
+        final double halfWidth = sampling.tolerance() * variance;
 
-        while (fin < maxD) {
-            final double left = start;
-            final double right = fin;
-            final Predicate<Sample> predicate = x -> (x.getDistance() > left && x
-                    .getDistance() <= right);
+        final Strata strata = new Strata(bins);
+        int used = 0;
+        int last = bins - 1;
+        for (int batch = Sampling.BATCH; last >= 0 && used < size; batch *= 2) {
+            final int from = used, to = Math.min(size, used + batch);
+            final int reach = last;
+            final double radius = edges[reach + 1];
+            final Strata round = IntStream.range(from, to).parallel().collect(
+                    () -> new Strata(bins),
+                    (acc, a) -> {
+                        final int p = order[a];
+                        final double vp = signals.signal(p) - ave;
+                        for (int i : tree.within(p, radius)) {
+                            final double dist = vectors.distance(p, i);
+                            if (dist > 0.0 && dist <= radius) {
+                                acc.add(bin(edges, dist), dist, vp * (signals.signal(i) - ave));
+                            }
+                        }
+                        acc.close(reach);
+                    },
+                    Strata::merge);
+            strata.merge(round);
+            used = to;
 
-            final double aveVal = samples.parallelStream().filter(predicate)
-                    .mapToDouble(Sample::getValue).average().getAsDouble();
+            last = -1;
+            for (int k = reach; k >= 0; k--) {
+                if (!strata.converged(k, size, z, halfWidth)) {
+                    last = k;
+                    break;
+                }
+            }
+        }
 
-            final double aveDist = samples.parallelStream().filter(predicate)
-                    .mapToDouble(Sample::getDistance).average().getAsDouble();
+        final double target = halfWidth / z;
+        for (int k = 0; k < bins; k++) {
+            if (strata.count[k] > 0) {
+                final double se = strata.error(k, size);
+                data.add(new Sample(strata.distance[k] / strata.count[k],
+                        strata.value[k] / strata.count[k], 1 / (se * se + target * target)));
+            }
+        }
+    }
 
-            data.add(new Sample(aveDist, aveVal));
-            start = fin;
-            fin += minD;
+    /**
+     * Границы интервалов {@code (k * minD, (k + 1) * minD]} до {@code maxD}.
+     */
+    @NotNull
+    private double[] edges() {
+        final List<Double> bounds = new ArrayList<>();
+        bounds.add(0.0);
+        for (double fin = minD; fin < maxD; fin += minD) {
+            bounds.add(fin);
         }
+        return bounds.stream().mapToDouble(Double::doubleValue).toArray();
     }
 
     /**
-     * Подбор параметров ковариационной функции.
+     * Номер интервала, содержащего расстояние {@code 0 < dist <= edges[bins]}.
      */
-    private void findOptimalParam() {
-        double alpha = 0.0, res = 1E6;
-        for (double newalpha = EPS; newalpha < maxD; newalpha += EPS) {
-            foo.setCorrelDistance(newalpha);
-            final double newres = getSqSum();
+    private int bin(@NotNull final double[] edges, final double dist) {
+        final int bins = edges.length - 1;
+        int k = Math.min(bins - 1, (int) FastMath.ceil(dist / minD) - 1);
+        while (k > 0 && dist <= edges[k]) k--;
+        while (dist > edges[k + 1]) k++;
+        return k;
+    }
+
+    /**
+     * Подбор расстояния корреляции при известной дисперсии.
+     *
+     * <p>Грубый просмотр {@link #SCAN} значений на (0, maxD) выделяет
+     * интервал с наименьшим отклонением, внутри которого минимум
+     * уточняется методом Брента. Отклонение вычисляется по табличной
+     * копии функции.</p>
+     */
+    private void findOptimalParam(@NotNull final CovFunction foo, @NotNull final List<Sample> data) {
+        final CovFunction fit = foo.tabulated();
+        final UnivariateFunction rms = a -> {
+            fit.setCorrelDistance(a);
+            return getSqSum(fit, data);
+        };
+
+        final double step = (maxD - EPS) / SCAN;
+        int best = 0;
+        double res = Double.POSITIVE_INFINITY;
+        for (int k = 0; k <= SCAN; k++) {
+            final double newres = rms.value(EPS + k * step);
             if (newres < res) {
-                alpha = newalpha;
+                best = k;
                 res = newres;
             }
         }
+        final double lo = EPS + Math.max(0, best - 1) * step;
+        final double hi = EPS + Math.min(SCAN, best + 1) * step;
+        double alpha = EPS + best * step;
+        if (hi > lo) {
+            final UnivariatePointValuePair p = new BrentOptimizer(1E-10, EPS * 1E-6).optimize(
+                    new MaxEval(MAX_EVAL), new UnivariateObjectiveFunction(rms),
+                    GoalType.MINIMIZE, new SearchInterval(lo, hi, alpha));
+            if (p.getValue() < res) {
+                alpha = p.getPoint();
+            }
+        }
         foo.setCorrelDistance(alpha);
     }
 
     /**
-     * Среднее квадратическое отклонение.
+     * Уточнение дисперсии и расстояния корреляции, а при {@code nugget}
+     * и самородка, методом Левенберга-Марквардта с аналитическими
+     * производными.
+     *
+     * <p>Наблюдения - средние ковариации интервалов с их весами; для самородка
+     * добавляется выборочная дисперсия на нулевом расстоянии, где модель
+     * равна {@code variance + nugget}. Параметры ограничиваются
+     * положительными значениями.</p>
      */
-    private double getSqSum() {
+    private void fitLeastSquares(@NotNull final CovFunction foo, @NotNull final List<Sample> data,
+                                 final boolean nugget) {
+        final int n = data.size() + (nugget ? 1 : 0);
+        final double[] target = new double[n];
+        final double[] weight = new double[n];
+        for (int k = 0; k < data.size(); k++) {
+            target[k] = data.get(k).getValue();
+            weight[k] = data.get(k).getWeight();
+        }
+        if (nugget) {
+            target[n - 1] = variance;
+            weight[n - 1] = totalWeight(data) / data.size();
+        }
+        final CovFunction.Type type = foo.type();
+
+        final MultivariateJacobianFunction model = point -> {
+            final double v = point.getEntry(0), a = point.getEntry(1);
+            final RealVector value = new ArrayRealVector(n);
+            final RealMatrix jacobian = new Array2DRowRealMatrix(n, point.getDimension());
+            for (int k = 0; k < data.size(); k++) {
+                final double d = data.get(k).getDistance();
+                final double c = type.covariance(d, a, v);
+                value.setEntry(k, c);
+                jacobian.setEntry(k, 0, type.covariance(d, a, 1));
+                // C = v * f(d / a): dC/da = -(d / a) * dC/dd
+                jacobian.setEntry(k, 1, -d / a * type.derivative(d, a, v));
+            }
+            if (nugget) {
+                value.setEntry(n - 1, v + point.getEntry(2));
+                jacobian.setEntry(n - 1, 0, 1);
+                jacobian.setEntry(n - 1, 2, 1);
+            }
+            return new Pair<>(value, jacobian);
+        };
+
+        final double[] start = nugget
+                ? new double[]{foo.variance(), foo.correlDistance(), 0.0}
+                : new double[]{foo.variance(), foo.correlDistance()};
+        final double minVariance = foo.variance() * 1E-9;
+        final LeastSquaresProblem problem = new LeastSquaresBuilder()
+                .start(start)
+                .model(model)
+                .target(target)
+                .weight(new DiagonalMatrix(weight))
+                .parameterValidator(p -> {
+                    final RealVector q = p.copy();
+                    q.setEntry(0, FastMath.max(minVariance, q.getEntry(0)));
+                    q.setEntry(1, FastMath.max(EPS, q.getEntry(1)));
+                    if (nugget) {
+                        q.setEntry(2, FastMath.max(0.0, q.getEntry(2)));
+                    }
+                    return q;
+                })
+                .maxEvaluations(MAX_EVAL)
+                .maxIterations(MAX_EVAL)
+                .build();
+        final RealVector p = new LevenbergMarquardtOptimizer().optimize(problem).getPoint();
+
+        foo.setVariance(p.getEntry(0));
+        foo.setCorrelDistance(p.getEntry(1));
+        if (nugget) {
+            foo.setNugget(p.getEntry(2));
+        }
+    }
+
+    /**
+     * Среднее квадратическое взвешенное отклонение.
+     */
+    private static double getSqSum(@NotNull final CovFunction fit, @NotNull final List<Sample> data) {
         return FastMath.sqrt(data
-                .parallelStream()
+                .stream()
                 .mapToDouble(
-                        x -> FastMath.pow(
-                                x.getValue() - foo.covariance(x.getDistance()),
-                                2)).average().getAsDouble());
+                        x -> x.getWeight() * FastMath.pow(
+                                x.getValue() - fit.covariance(x.getDistance()),
+                                2)).sum() / totalWeight(data));
+    }
+
+    private static double totalWeight(@NotNull final List<Sample> data) {
+        return data.stream().mapToDouble(Sample::getWeight).sum();
     }
 
+    /**
+     * Среднее расстояние до ближайшей соседней точки.
+     */
     private double minDist() {
-        final List<Double> raw = new ArrayList<>(size);
-        final List<Double> min = new ArrayList<>(size);
-        for (int p = 0; p < size; p++) {
-            for (int i = 0; i < size; i++)
-                if (i != p)
-                    raw.add(sphericalDistance.applyAsDouble(list.get(p), list.get(i)));
-            min.add(raw.stream().mapToDouble(Double::doubleValue).min()
-                    .getAsDouble());
-            raw.clear();
+        final double[] min = IntStream.range(0, size).parallel()
+                .mapToDouble(tree::nearestDistance).toArray();
+        double sum = 0.0;
+        for (double d : min) {
+            sum += d;
         }
-        return min.stream().mapToDouble(Double::doubleValue).average()
-                .getAsDouble();
+        return sum / size;
     }
 
+    /**
+     * Среднее расстояние между точками; каждая пара
+     * учитывается один раз.
+     */
     private double aveDist() {
-        final List<Double> raw = new ArrayList<>(size);
-        final List<Double> ave = new ArrayList<>(size);
-        for (int p = 0; p < size; p++) {
-            for (int i = 0; i < size; i++)
-                if (i != p)
-                    raw.add(sphericalDistance.applyAsDouble(list.get(p), list.get(i)));
-            ave.add(raw.stream().mapToDouble(Double::doubleValue).average()
-                    .getAsDouble());
-            raw.clear();
+        final double[] rows = IntStream.range(0, size).parallel().mapToDouble(p -> {
+            final double[] row = new double[size - p - 1];
+            distances.row(p, p + 1, size, row);
+            double sum = 0.0;
+            for (double d : row) {
+                sum += d;
+            }
+            return sum;
+        }).toArray();
+        double sum = 0.0;
+        for (double d : rows) {
+            sum += d;
+        }
+        return 2 * sum / ((double) size * (size - 1));
+    }
+
+    /**
+     * Среднее расстояние между точками по строкам первых якорей
+     * перестановки {@code order}.
+     */
+    private double aveDist(@NotNull final int[] order) {
+        final UnitVectors vectors = distances.vectors();
+        final double[] rows = IntStream.range(0, Math.min(size, Sampling.BATCH)).parallel()
+                .mapToDouble(a -> {
+                    final double[] row = new double[size];
+                    vectors.row(order[a], 0, size, row);
+                    double sum = 0.0;
+                    for (double d : row) {
+                        sum += d;
+                    }
+                    return sum / (size - 1);
+                }).toArray();
+        return StatUtils.mean(rows);
+    }
+
+    /**
+     * Оцениваемые параметры ковариационной функции.
+     */
+    public enum Fit {
+        /**
+         * Только расстояние корреляции; дисперсия равна выборочной.
+         */
+        correlation,
+
+        /**
+         * Дисперсия и расстояние корреляции.
+         */
+        variance,
+
+        /**
+         * Дисперсия, расстояние корреляции и самородок.
+         */
+        nugget
+    }
+
+    /**
+     * Настройки случайного выбора пар для эмпирической ковариации.
+     */
+    public static final class Sampling {
+
+        /**
+         * Число якорей первого раунда.
+         */
+        static final int BATCH = 256;
+
+        private double tolerance = 0.02;
+        private double confidence = 0.95;
+        private long seed = 1;
+
+        /**
+         * @param tolerance полуширина доверительного интервала ковариации
+         *                  интервала в долях дисперсии сигналов, {@code (0, 1]}
+         * @return this
+         */
+        @NotNull
+        public Sampling setTolerance(final double tolerance) {
+            if (!(tolerance > 0 && tolerance <= 1)) {
+                throw new IllegalArgumentException("tolerance is not valid");
+            }
+            this.tolerance = tolerance;
+            return this;
+        }
+
+        /**
+         * @param confidence доверительная вероятность, {@code (0, 1)}
+         * @return this
+         */
+        @NotNull
+        public Sampling setConfidence(final double confidence) {
+            if (!(confidence > 0 && confidence < 1)) {
+                throw new IllegalArgumentException("confidence is not valid");
+            }
+            this.confidence = confidence;
+            return this;
+        }
+
+        /**
+         * @param seed начальное значение генератора случайных чисел
+         * @return this
+         */
+        @NotNull
+        public Sampling setSeed(final long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        public double tolerance() {
+            return tolerance;
+        }
+
+        public double confidence() {
+            return confidence;
+        }
+
+        public long seed() {
+            return seed;
+        }
+
+        /**
+         * Квантиль нормального распределения для доверительной вероятности.
+         */
+        double quantile() {
+            return new NormalDistribution().inverseCumulativeProbability((1 + confidence) / 2);
+        }
+
+        /**
+         * Случайная перестановка номеров точек - порядок якорей.
+         */
+        @NotNull
+        int[] order(final int n) {
+            final int[] order = new int[n];
+            for (int k = 0; k < n; k++) {
+                order[k] = k;
+            }
+            final Random random = new Random(seed);
+            for (int k = n - 1; k > 0; k--) {
+                final int j = random.nextInt(k + 1);
+                final int t = order[k];
+                order[k] = order[j];
+                order[j] = t;
+            }
+            return order;
         }
-        return ave.stream().mapToDouble(Double::doubleValue).average()
-                .getAsDouble();
     }
 
     private static class Sample {
-        private final Pair<Double, Double> sample;
+        private final double distance, value, weight;
 
-        Sample(final double distance, final double value) {
-            sample = new Pair<>(distance, value);
+        Sample(final double distance, final double value, final double weight) {
+            this.distance = distance;
+            this.value = value;
+            this.weight = weight;
         }
 
         public double getDistance() {
-            return sample.getFirst();
+            return distance;
         }
 
         public double getValue() {
-            return sample.getSecond();
+            return value;
+        }
+
+        public double getWeight() {
+            return weight;
+        }
+    }
+
+    /**
+     * Накопители интервалов одного потока.
+     */
+    private static final class Bins {
+        private final double[] value, distance;
+        private final long[] count;
+        private final double[] row;
+
+        Bins(final int bins, final int size) {
+            value = new double[bins];
+            distance = new double[bins];
+            count = new long[bins];
+            row = new double[size];
+        }
+
+        void add(final int k, final double dist, final double mult) {
+            value[k] += mult;
+            distance[k] += dist;
+            count[k]++;
+        }
+
+        void merge(@NotNull final Bins other) {
+            for (int k = 0; k < count.length; k++) {
+                value[k] += other.value[k];
+                distance[k] += other.distance[k];
+                count[k] += other.count[k];
+            }
+        }
+    }
+
+    /**
+     * Накопители выборки пар одного потока: по интервалам суммы
+     * произведений, расстояний и числа пар, а также суммы квадратов
+     * и произведений итогов якорей для стандартной ошибки.
+     */
+    private static final class Strata {
+
+        /**
+         * Наименьшее число якорей для оценки точности интервала.
+         */
+        private static final int MIN_ANCHORS = 32;
+
+        private final double[] value, distance;
+        private final long[] count, anchors;
+        private final double[] yy, xx, xy;
+        /**
+         * Итоги текущего якоря.
+         */
+        private final double[] y, x;
+
+        Strata(final int bins) {
+            value = new double[bins];
+            distance = new double[bins];
+            count = new long[bins];
+            anchors = new long[bins];
+            yy = new double[bins];
+            xx = new double[bins];
+            xy = new double[bins];
+            y = new double[bins];
+            x = new double[bins];
+        }
+
+        void add(final int k, final double dist, final double mult) {
+            value[k] += mult;
+            distance[k] += dist;
+            count[k]++;
+            y[k] += mult;
+            x[k]++;
+        }
+
+        /**
+         * Завершить якорь, пары которого искались в интервалах {@code 0..reach}.
+         */
+        void close(final int reach) {
+            for (int k = 0; k <= reach; k++) {
+                yy[k] += y[k] * y[k];
+                xx[k] += x[k] * x[k];
+                xy[k] += x[k] * y[k];
+                anchors[k]++;
+                y[k] = 0.0;
+                x[k] = 0.0;
+            }
+        }
+
+        void merge(@NotNull final Strata other) {
+            for (int k = 0; k < count.length; k++) {
+                value[k] += other.value[k];
+                distance[k] += other.distance[k];
+                count[k] += other.count[k];
+                anchors[k] += other.anchors[k];
+                yy[k] += other.yy[k];
+                xx[k] += other.xx[k];
+                xy[k] += other.xy[k];
+            }
+        }
+
+        /**
+         * Стандартная ошибка оценки отношением для интервала {@code k}
+         * при {@code size} возможных якорях.
+         */
+        double error(final int k, final int size) {
+            final long m = anchors[k];
+            if (m >= size) {
+                return 0.0;
+            }
+            if (m < 2 || count[k] == 0) {
+                return Double.POSITIVE_INFINITY;
+            }
+            final double r = value[k] / count[k];
+            final double mean = (double) count[k] / m;
+            final double s2 = (yy[k] - 2 * r * xy[k] + r * r * xx[k]) / (m - 1);
+            return FastMath.sqrt(FastMath.max(0.0, (1 - (double) m / size) * s2 / (m * mean * mean)));
+        }
+
+        boolean converged(final int k, final int size, final double z, final double halfWidth) {
+            if (anchors[k] >= size) {
+                return true;
+            }
+            if (anchors[k] < MIN_ANCHORS) {
+                return false;
+            }
+            return count[k] == 0 || z * error(k, size) <= halfWidth;
         }
     }
 }
@@ -0,0 +1,129 @@
+package by.geo.cov;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Табличная ковариационная функция.
+ *
+ * <p>Ковариация любого типа имеет вид {@code C(d) = variance * f(d / correlDistance)},
+ * поэтому табулируется лишь форма {@code f(t)} вместе с производной
+ * на равномерной сетке {@code t} от 0 до {@link Type#range()}; значение
+ * находится кубическим эрмитовым сплайном по двум соседним узлам.
+ * Таблица не зависит от параметров функции, и расстояние корреляции
+ * можно менять без ее перестроения. За пределами таблицы ковариация
+ * вычисляется точно.</p>
+ *
+ * <p>Шаг сетки уменьшается вдвое, пока относительная ошибка в
+ * серединах и четвертях всех интервалов, где ошибка эрмитова сплайна
+ * наибольшая, не станет меньше заданной. Таблица строится один раз
+ * на тип и ошибку и разделяется всеми функциями.</p>
+ */
+final class TabulatedCovFunction extends CovFunction {
+
+    /**
+     * Относительная ошибка по умолчанию.
+     */
+    static final double ERROR = 1E-10;
+
+    private static final double MIN_ERROR = 1E-13, MAX_ERROR = 1E-3;
+    private static final double[] CHECKS = {0.25, 0.5, 0.75};
+
+    /**
+     * Таблицы форм по типу и допустимой ошибке.
+     */
+    private static final Map<String, Table> TABLES = new ConcurrentHashMap<>();
+
+    private final double tMax;
+    @NotNull
+    private final Table table;
+
+    TabulatedCovFunction(@NotNull final Type type, final double variance, final double relError) {
+        super(type, variance);
+        if (!(relError >= MIN_ERROR && relError <= MAX_ERROR)) {
+            throw new IllegalArgumentException("relError is not valid");
+        }
+        tMax = type.range();
+        table = TABLES.computeIfAbsent(type.name() + ":" + relError, key -> new Table(type, relError));
+    }
+
+    @Override
+    public double covariance(final double distance) {
+        final double t = distance / correlDistance();
+        if (t >= 0 && t < tMax) {
+            return variance() * table.shape(t);
+        }
+        return super.covariance(distance);
+    }
+
+    @Override
+    public void covariance(@NotNull final double[] distance, @NotNull final double[] out,
+                           final int n) {
+        if (n < 0 || distance.length < n || out.length < n) {
+            throw new IllegalArgumentException("arrays length is not valid");
+        }
+        final double scale = 1 / correlDistance();
+        final double variance = variance();
+        for (int k = 0; k < n; k++) {
+            final double t = distance[k] * scale;
+            out[k] = t >= 0 && t < tMax ? variance * table.shape(t) : super.covariance(distance[k]);
+        }
+    }
+
+    /**
+     * Таблица формы {@code f(t)} и ее производной, умноженной на шаг.
+     */
+    private static final class Table {
+
+        @NotNull
+        private double[] f = new double[0], g = new double[0];
+        private double inverse;
+
+        Table(@NotNull final Type type, final double relError) {
+            double h = 1.0 / 16;
+            while (build(type, h) > relError) {
+                h /= 2;
+            }
+        }
+
+        /**
+         * Таблица с шагом {@code h} и ее наибольшая относительная ошибка.
+         */
+        private double build(@NotNull final Type type, final double h) {
+            final int n = (int) Math.ceil(type.range() / h) + 1;
+            f = new double[n];
+            g = new double[n];
+            for (int k = 0; k < n; k++) {
+                f[k] = type.covariance(k * h, 1, 1);
+                g[k] = type.derivative(k * h, 1, 1) * h;
+            }
+            inverse = 1 / h;
+
+            double error = 0.0;
+            for (int k = 0; k < n - 1; k++) {
+                for (double u : CHECKS) {
+                    final double t = (k + u) * h;
+                    final double exact = type.covariance(t, 1, 1);
+                    error = Math.max(error, Math.abs(shape(t) - exact) / Math.abs(exact));
+                }
+            }
+            return error;
+        }
+
+        /**
+         * Форма {@code f(t)} по таблице, {@code 0 <= t < range}.
+         */
+        double shape(final double t) {
+            final double s = t * inverse;
+            final int k = Math.min((int) s, f.length - 2);
+            final double u = s - k, v = 1 - u;
+            final double h00 = (1 + 2 * u) * v * v;
+            final double h10 = u * v * v;
+            final double h01 = u * u * (3 - 2 * u);
+            final double h11 = -u * u * v;
+            return h00 * f[k] + h10 * g[k] + h01 * f[k + 1] + h11 * g[k + 1];
+        }
+    }
+}
@@ -3,6 +3,13 @@ package by.geo.lsc;
 import org.apache.commons.math3.linear.RealMatrix;
 import org.jetbrains.annotations.NotNull;
 
+/**
+ * Матрица ошибок прогноза по обратной ковариационной матрице.
+ *
+ * @deprecated прогноз не строит обратную матрицу: ошибки считаются
+ * подстановками по разложению Холецкого в {@link LSqCollocationImpl}
+ */
+@Deprecated
 interface ErrorMatrix {
     @NotNull RealMatrix standarts();
 }
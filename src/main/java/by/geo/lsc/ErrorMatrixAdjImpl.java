@@ -4,6 +4,13 @@ import org.apache.commons.math3.linear.MatrixUtils;
 import org.apache.commons.math3.linear.RealMatrix;
 import org.jetbrains.annotations.NotNull;
 
+/**
+ * Матрица ошибок прогноза с параметрами тренда.
+ *
+ * @deprecated прогноз не строит обратную матрицу: ошибки считаются
+ * подстановками по разложению Холецкого в {@link LSqCollocationAdjImpl}
+ */
+@Deprecated
 public class ErrorMatrixAdjImpl implements ErrorMatrix {
     private final @NotNull RealMatrix Css;
     private final @NotNull RealMatrix A;
@@ -3,6 +3,13 @@ package by.geo.lsc;
 import org.apache.commons.math3.linear.RealMatrix;
 import org.jetbrains.annotations.NotNull;
 
+/**
+ * Матрица ошибок прогноза без параметров {@code Css - Cst * C^-1 * Cts}.
+ *
+ * @deprecated прогноз не строит обратную матрицу: ошибки считаются
+ * подстановками по разложению Холецкого в {@link LSqCollocationImpl}
+ */
+@Deprecated
 public class ErrorMatrixImpl implements ErrorMatrix {
     private final @NotNull RealMatrix Css;
     private final @NotNull RealMatrix Q, Cts;
@@ -1,15 +1,15 @@
 package by.geo.lsc;
 
-import by.geo.cov.AutoCovMatrix;
 import by.geo.cov.CovFunction;
 import by.geo.cov.CrossCovMatrix;
+import by.geo.math.PackedCholesky;
 import by.geo.point.ControlPoint;
 import by.geo.point.Observation;
 import by.geo.point.PrognosisNode;
+import by.geo.point.SignalSet;
 import by.geo.ref.Ellipsoid;
 import by.geo.trend.ImpactMatrix;
 import org.apache.commons.math3.linear.Array2DRowRealMatrix;
-import org.apache.commons.math3.linear.DiagonalMatrix;
 import org.apache.commons.math3.linear.MatrixUtils;
 import org.apache.commons.math3.linear.RealMatrix;
 import org.apache.commons.math3.util.FastMath;
@@ -17,6 +17,7 @@ import org.jetbrains.annotations.NotNull;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.stream.IntStream;
 
 public class LSqCollocationAdjImpl extends LSqCollocationImpl {
 
@@ -33,7 +34,18 @@ public class LSqCollocationAdjImpl extends LSqCollocationImpl {
                                  @NotNull final CovFunction covFunction,
                                  @NotNull final Ellipsoid ell,
                                  @NotNull final ImpactMatrix impact) {
-        super(controlPoints, predict, covFunction, ell);
+        this(SignalSet.of(controlPoints), predict, covFunction, ell, impact);
+    }
+
+    /**
+     * Среднеквадратическая коллокация с параметрами по набору сигналов.
+     */
+    public LSqCollocationAdjImpl(@NotNull final SignalSet signals,
+                                 @NotNull final Collection<PrognosisNode> predict,
+                                 @NotNull final CovFunction covFunction,
+                                 @NotNull final Ellipsoid ell,
+                                 @NotNull final ImpactMatrix impact) {
+        super(signals, predict, covFunction, ell);
         this.impact = impact;
     }
 
@@ -41,25 +53,10 @@ public class LSqCollocationAdjImpl extends LSqCollocationImpl {
     @NotNull
     public Collection<PrognosisNode> prognosis() {
         /* вектор невязок */
-        final double[] arrL = controlPoints.stream()
-                .mapToDouble(p -> p.signal().value()).toArray();
-
-		/* вектор дисперсий ошибок */
-        final double[] arrD = controlPoints.stream()
-                .mapToDouble(p -> FastMath.pow(p.signal().error(), 2))
-                .toArray();
-
-		/* матрица невязок */
-        final RealMatrix L = new Array2DRowRealMatrix(arrL);
+        final double[] arrL = signals.signals();
 
-		/* авто-ковариационная матрица */
-        final RealMatrix Ctt = new AutoCovMatrix(controlPoints, covFunction, ell).covMatrix();
-
-		/* матрица шума */
-        final RealMatrix D = new DiagonalMatrix(arrD);
-
-		/* обратная общая ковариационная матрица */
-        final RealMatrix Cinv = MatrixUtils.inverse(Ctt.add(D));
+		/* разложение общей ковариационной матрицы */
+        final PackedCholesky C = factorize();
 
 		/* кросс-ковариационная матрица */
         final RealMatrix Cst = new CrossCovMatrix(predict, controlPoints, covFunction, ell).covMatrix();
@@ -67,31 +64,69 @@ public class LSqCollocationAdjImpl extends LSqCollocationImpl {
 		/* фильтрация и уравнивание */
         /* матрица влияния */
         final RealMatrix A = impact.create(controlPoints);
-        final RealMatrix At = A.transpose();
-
-        final RealMatrix X = MatrixUtils.inverse(At.multiply(Cinv).multiply(A))
-                .multiply(At).multiply(Cinv).multiply(L);
+        final int m = A.getColumnDimension();
+
+        /* столбцы W = U^-T * A */
+        final double[][] W = new double[m][];
+        IntStream.range(0, m).parallel().forEach(k -> {
+            W[k] = A.getColumn(k);
+            C.forward(W[k]);
+        });
+
+        /* нормальная матрица A^T * C^-1 * A = W^T * W и ее обращение */
+        final RealMatrix N = new Array2DRowRealMatrix(m, m);
+        for (int j = 0; j < m; j++) {
+            for (int k = j; k < m; k++) {
+                final double v = dot(W[j], W[k]);
+                N.setEntry(j, k, v);
+                N.setEntry(k, j, v);
+            }
+        }
+        final RealMatrix Exx = MatrixUtils.inverse(N);
+
+        /* X = Exx * W^T * U^-T * L */
+        final double[] y = arrL.clone();
+        C.forward(y);
+        final double[] wy = new double[m];
+        for (int k = 0; k < m; k++) {
+            wy[k] = dot(W[k], y);
+        }
+        final double[] X = Exx.operate(wy);
 
 		/* параметрическая модель */
-        final RealMatrix AX = A.multiply(X);
+        final double[] AX = A.operate(X);
         final RealMatrix B = impact.create(predict);
 
-		/* прогнозируемый сигнал */
-        final RealMatrix S = Cst.multiply(Cinv).multiply(L.subtract(AX));
+		/* прогнозируемый сигнал: S = Cst * C^-1 * (L - AX) */
+        final double[] r = new double[arrL.length];
+        for (int k = 0; k < r.length; k++) {
+            r[k] = arrL[k] - AX[k];
+        }
+        final double[] S = Cst.operate(C.solve(r));
 
 		/* прогнозируемый сигнал */
-        final double[] result = B.multiply(X).add(S).transpose().getData()[0];
-
-		/* ошибка сигнала */
-        final ErrorMatrix em = new ErrorMatrixAdjImpl(new AutoCovMatrix(predict, covFunction, ell).covMatrix(), Cst, A, Cinv, B);
+        final double[] BX = B.operate(X);
+        final double[] result = new double[S.length];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = BX[i] + S[i];
+        }
 
-        final RealMatrix errS = em.standarts();
-        final double[][] resErr = errS.getData();
+		/* ошибка сигнала: Css - q^T q + (W^T q - b)^T Exx (W^T q - b), q = U^-T * Cts */
+        final double variance = covFunction.variance();
+        final double[] resErr = IntStream.range(0, predict.size()).parallel().mapToDouble(i -> {
+            final double[] q = Cst.getRow(i);
+            C.forward(q);
+            final double[] g = new double[m];
+            for (int k = 0; k < m; k++) {
+                g[k] = dot(W[k], q) - B.getEntry(i, k);
+            }
+            return variance - dot(q, q) + dot(g, Exx.operate(g));
+        }).toArray();
 
         final Collection<PrognosisNode> c = new ArrayList<>();
         for (int i = 0; i < predict.size(); i++) {
             c.add(new PrognosisNode(predict.get(i), new Observation(result[i], FastMath
-                    .sqrt(resErr[i][i]))));
+                    .sqrt(resErr[i]))));
         }
         return c;
     }
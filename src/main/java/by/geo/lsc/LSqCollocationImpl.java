@@ -3,13 +3,14 @@ package by.geo.lsc;
 import by.geo.cov.AutoCovMatrix;
 import by.geo.cov.CovFunction;
 import by.geo.cov.CrossCovMatrix;
+import by.geo.math.PackedCholesky;
+import by.geo.math.PackedSymmetricMatrix;
 import by.geo.point.ControlPoint;
+import by.geo.point.Geodetic;
 import by.geo.point.Observation;
 import by.geo.point.PrognosisNode;
+import by.geo.point.SignalSet;
 import by.geo.ref.Ellipsoid;
-import org.apache.commons.math3.linear.Array2DRowRealMatrix;
-import org.apache.commons.math3.linear.DiagonalMatrix;
-import org.apache.commons.math3.linear.MatrixUtils;
 import org.apache.commons.math3.linear.RealMatrix;
 import org.apache.commons.math3.util.FastMath;
 import org.jetbrains.annotations.NotNull;
@@ -18,13 +19,19 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 public class LSqCollocationImpl implements LSqCollocation {
 
+    /**
+     * Сигналы исходных точек.
+     */
+    final @NotNull SignalSet signals;
+
     /**
      * Исходные точки.
      */
-    final @NotNull List<ControlPoint> controlPoints;
+    final @NotNull List<Geodetic> controlPoints;
 
     /**
      * Узлы сетки для прогноза.
@@ -48,8 +55,19 @@ public class LSqCollocationImpl implements LSqCollocation {
                               @NotNull final Collection<PrognosisNode> predict,
                               @NotNull final CovFunction covFunction,
                               @NotNull final Ellipsoid ell) {
+        this(SignalSet.of(controlPoints), predict, covFunction, ell);
+    }
+
+    /**
+     * Среднеквадратическая коллокация без параметров по набору сигналов.
+     */
+    public LSqCollocationImpl(@NotNull final SignalSet signals,
+                              @NotNull final Collection<PrognosisNode> predict,
+                              @NotNull final CovFunction covFunction,
+                              @NotNull final Ellipsoid ell) {
         this.ell = ell;
-        this.controlPoints = controlPoints.stream().collect(Collectors.toList());
+        this.signals = signals;
+        this.controlPoints = signals.points();
         this.predict = predict.stream().collect(Collectors.toList());
         this.covFunction = covFunction;
     }
@@ -58,44 +76,65 @@ public class LSqCollocationImpl implements LSqCollocation {
     @NotNull
     public Collection<PrognosisNode> prognosis() {
         /* вектор невязок */
-        final double[] arrL = controlPoints.stream()
-                .mapToDouble(p -> p.signal().value()).toArray();
-
-		/* вектор дисперсий ошибок */
-        final double[] arrD = controlPoints.stream()
-                .mapToDouble(p -> FastMath.pow(p.signal().error(), 2))
-                .toArray();
-
-		/* матрица невязок */
-        final RealMatrix L = new Array2DRowRealMatrix(arrL);
-
-		/* авто-ковариационная матрица */
-        final RealMatrix Ctt = new AutoCovMatrix(controlPoints, covFunction, ell)
-                .covMatrix();
+        final double[] arrL = signals.signals();
 
-		/* матрица шума */
-        final RealMatrix D = new DiagonalMatrix(arrD);
-
-		/* обратная общая ковариационная матрица */
-        final RealMatrix Cinv = MatrixUtils.inverse(Ctt.add(D));
+		/* разложение общей ковариационной матрицы */
+        final PackedCholesky C = factorize();
 
 		/* кросс-ковариационная матрица */
         final RealMatrix Cst = new CrossCovMatrix(predict, controlPoints, covFunction, ell).covMatrix();
 
-		/* прогнозируемый сигнал */
-        final RealMatrix S = Cst.multiply(Cinv).multiply(L);
-        final double[] result = S.transpose().getData()[0];
+		/* прогнозируемый сигнал: S = Cst * C^-1 * L */
+        final double[] result = Cst.operate(C.solve(arrL));
 
-		/* ошибка сигнала */
-        final RealMatrix errS = new ErrorMatrixImpl(new AutoCovMatrix(predict, covFunction, ell).covMatrix(), Cst, Cinv).standarts();
-        final double[][] resErr = errS.getData();
+		/* ошибка сигнала: Css - q^T q, q = U^-T * Cts */
+        final double variance = covFunction.variance();
+        final double[] resErr = IntStream.range(0, predict.size()).parallel().mapToDouble(i -> {
+            final double[] q = Cst.getRow(i);
+            C.forward(q);
+            return variance - dot(q, q);
+        }).toArray();
 
         final Collection<PrognosisNode> c = new ArrayList<>();
         for (int i = 0; i < predict.size(); i++) {
             c.add(new PrognosisNode(predict.get(i), new Observation(result[i], FastMath
-                    .sqrt(resErr[i][i]))));
+                    .sqrt(resErr[i]))));
         }
         return c;
     }
 
+    /**
+     * Разложение Холецкого общей ковариационной матрицы {@code Ctt + D},
+     * где {@code D} - дисперсии ошибок исходных точек и самородок.
+     *
+     * <p>Каждый вызов строит новое разложение; оценку числа
+     * обусловленности дает {@link PackedCholesky#conditionEstimate()}.</p>
+     *
+     * @return разложение общей ковариационной матрицы
+     */
+    @NotNull
+    public PackedCholesky factorize() {
+		/* вектор дисперсий ошибок и самородка */
+        final double[] arrD = new double[signals.size()];
+        for (int k = 0; k < arrD.length; k++) {
+            arrD[k] = FastMath.pow(signals.error(k), 2) + covFunction.nugget();
+        }
+
+		/* авто-ковариационная матрица */
+        final PackedSymmetricMatrix Ctt = new AutoCovMatrix(controlPoints, covFunction, ell)
+                .covMatrix();
+
+		/* общая ковариационная матрица: добавление шума */
+        Ctt.addToDiagonal(arrD);
+
+        return new PackedCholesky(Ctt);
+    }
+
+    static double dot(@NotNull final double[] a, @NotNull final double[] b) {
+        double sum = 0.0;
+        for (int k = 0; k < a.length; k++) {
+            sum += a[k] * b[k];
+        }
+        return sum;
+    }
 }
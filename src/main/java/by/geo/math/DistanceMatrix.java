@@ -0,0 +1,280 @@
+package by.geo.math;
+
+import by.geo.point.Geodetic;
+import by.geo.ref.Ellipsoid;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.IntStream;
+
+/**
+ * Матрица сферических расстояний между точками набора.
+ *
+ * <p>Матрица общая для всех потребителей одного набора точек:
+ * {@link #of(List, Ellipsoid)} возвращает ранее созданную матрицу,
+ * пока список точек достижим. Хранится верхний треугольник
+ * ({@link PackedSymmetricMatrix}), который выделяется при первом
+ * обращении к расстояниям и вычисляется блоками по мере обращения
+ * либо сразу целиком параллельно ({@link #compute()}).</p>
+ *
+ * <p>Если треугольник больше предела памяти
+ * ({@link #setMemoryLimit(long)}), расстояния не хранятся
+ * и вычисляются заново при каждом обращении по единичным векторам.</p>
+ */
+public final class DistanceMatrix {
+
+    /**
+     * Размер блока.
+     */
+    private static final int TILE = 256;
+    private static final int LOCKS = 64;
+
+    private static final Map<List<? extends Geodetic>, DistanceMatrix> cache =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
+    private static volatile long memoryLimit =
+            Math.min(512L << 20, Runtime.getRuntime().maxMemory() / 4);
+
+    @NotNull
+    private final Ellipsoid ell;
+    @NotNull
+    private final UnitVectors vectors;
+    private final int size, tiles;
+    /**
+     * Хранятся ли расстояния; треугольник выделяется при первом обращении.
+     */
+    private final boolean stored;
+    @Nullable
+    private volatile PackedSymmetricMatrix distances;
+    @Nullable
+    private final AtomicIntegerArray ready;
+    @NotNull
+    private final Object[] locks = new Object[LOCKS];
+
+    private DistanceMatrix(@NotNull final List<? extends Geodetic> points,
+                           @NotNull final Ellipsoid ell) {
+        this.ell = ell;
+        this.vectors = new UnitVectors(points, ell);
+        this.size = points.size();
+        this.tiles = (size + TILE - 1) / TILE;
+
+        final long length = (long) size * (size + 1) / 2;
+        if (length * Double.BYTES <= memoryLimit && length <= Integer.MAX_VALUE - 8) {
+            stored = true;
+            ready = new AtomicIntegerArray(tiles * (tiles + 1) / 2);
+        } else {
+            stored = false;
+            ready = null;
+        }
+        for (int k = 0; k < LOCKS; k++) {
+            locks[k] = new Object();
+        }
+    }
+
+    /**
+     * Матрица расстояний набора точек.
+     *
+     * <p>Набор определяется списком: для равного списка точек
+     * и эллипсоида с теми же полуосями возвращается та же матрица. Список
+     * не должен изменяться, пока матрица используется. Поиск в кэше
+     * вычисляет {@code hashCode} списка и, при совпадении, {@code equals}
+     * с ключом - это {@code O(N)} на вызов, что мало по сравнению
+     * с построением, но вызывать метод в цикле не следует.</p>
+     *
+     * @param points точки
+     * @param ell    эллипсоид
+     * @return матрица расстояний
+     */
+    @NotNull
+    public static DistanceMatrix of(@NotNull final List<? extends Geodetic> points,
+                                    @NotNull final Ellipsoid ell) {
+        synchronized (cache) {
+            final DistanceMatrix m = cached(points, ell);
+            if (m != null) {
+                return m;
+            }
+        }
+        // матрица строится вне блокировки: векторы вычисляются параллельно;
+        // при одновременном построении сохраняется и возвращается первая
+        final DistanceMatrix built = new DistanceMatrix(points, ell);
+        synchronized (cache) {
+            final DistanceMatrix m = cached(points, ell);
+            if (m != null) {
+                return m;
+            }
+            cache.put(points, built);
+            return built;
+        }
+    }
+
+    /**
+     * Матрица из кэша, если она построена для того же набора и эллипсоида.
+     */
+    @Nullable
+    private static DistanceMatrix cached(@NotNull final List<? extends Geodetic> points,
+                                         @NotNull final Ellipsoid ell) {
+        final DistanceMatrix m = cache.get(points);
+        if (m != null && m.size == points.size()
+                && m.ell.getA() == ell.getA() && m.ell.getB() == ell.getB()) {
+            return m;
+        }
+        return null;
+    }
+
+    /**
+     * Предел памяти для хранимых расстояний одной матрицы; действует
+     * на матрицы, создаваемые после вызова.
+     *
+     * @param bytes предел в байтах; 0 - не хранить расстояния
+     * @throws IllegalArgumentException если {@code bytes < 0}
+     */
+    public static void setMemoryLimit(final long bytes) {
+        if (bytes < 0) {
+            throw new IllegalArgumentException("bytes is not valid");
+        }
+        memoryLimit = bytes;
+    }
+
+    /**
+     * @return число точек
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return единичные векторы точек
+     */
+    @NotNull
+    public UnitVectors vectors() {
+        return vectors;
+    }
+
+    /**
+     * @return {@code true}, если расстояния хранятся
+     */
+    public boolean isStored() {
+        return stored;
+    }
+
+    /**
+     * Вычислить все недостающие блоки параллельно.
+     * Если расстояния не хранятся, ничего не делает.
+     */
+    public void compute() {
+        if (!stored) {
+            return;
+        }
+        IntStream.range(0, tiles).parallel().forEach(bi -> {
+            for (int bj = bi; bj < tiles; bj++) {
+                ensure(bi, bj);
+            }
+        });
+    }
+
+    /**
+     * Сферическое расстояние между точками.
+     *
+     * @param i номер первой точки
+     * @param j номер второй точки
+     * @return расстояние в градусах
+     */
+    public double distance(final int i, final int j) {
+        if (!stored) {
+            return vectors.distance(i, j);
+        }
+        final int a = Math.min(i, j), b = Math.max(i, j);
+        ensure(a / TILE, b / TILE);
+        final PackedSymmetricMatrix distances = storage();
+        return distances.data()[distances.rowOffset(a) + (b - a)];
+    }
+
+    /**
+     * Расстояния от точки {@code i} до точек {@code from..to-1};
+     * то же, что {@link UnitVectors#row(int, int, int, double[])}.
+     *
+     * @param i    номер точки
+     * @param from номер первой точки, включительно
+     * @param to   номер последней точки, исключительно
+     * @param out  массив расстояний в градусах, не короче {@code to - from}
+     */
+    public void row(final int i, final int from, final int to, @NotNull final double[] out) {
+        if (!stored) {
+            vectors.row(i, from, to, out);
+            return;
+        }
+        final PackedSymmetricMatrix distances = storage();
+        final double[] data = distances.data();
+        final int bi = i / TILE;
+
+        // до диагонали: столбец i верхнего треугольника
+        final int lower = Math.min(to, i);
+        for (int j = from; j < lower; j++) {
+            if (j == from || j % TILE == 0) {
+                ensure(j / TILE, bi);
+            }
+            out[j - from] = data[distances.rowOffset(j) + (i - j)];
+        }
+        // от диагонали: непрерывный участок строки i
+        final int upper = Math.max(from, i);
+        if (upper < to) {
+            for (int bj = upper / TILE; bj <= (to - 1) / TILE; bj++) {
+                ensure(bi, bj);
+            }
+            System.arraycopy(data, distances.rowOffset(i) + (upper - i),
+                    out, upper - from, to - upper);
+        }
+    }
+
+    /**
+     * Хранимый треугольник; выделяется при первом обращении, так что
+     * матрица, у которой берутся только {@link #vectors()}, памяти
+     * под расстояния не занимает.
+     */
+    @NotNull
+    private PackedSymmetricMatrix storage() {
+        PackedSymmetricMatrix m = distances;
+        if (m == null) {
+            synchronized (locks) {
+                m = distances;
+                if (m == null) {
+                    m = new PackedSymmetricMatrix(size);
+                    distances = m;
+                }
+            }
+        }
+        return m;
+    }
+
+    /**
+     * Вычислить блок {@code (bi, bj)}, {@code bi <= bj}, если он еще
+     * не вычислен.
+     */
+    private void ensure(final int bi, final int bj) {
+        final int t = bi * tiles - bi * (bi - 1) / 2 + (bj - bi);
+        if (ready.get(t) != 0) {
+            return;
+        }
+        synchronized (locks[t % LOCKS]) {
+            if (ready.get(t) != 0) {
+                return;
+            }
+            final PackedSymmetricMatrix distances = storage();
+            final double[] data = distances.data();
+            final double[] row = new double[TILE];
+            final int i0 = bi * TILE, j0 = bj * TILE;
+            final int i1 = Math.min(size, i0 + TILE), j1 = Math.min(size, j0 + TILE);
+            for (int i = i0; i < i1; i++) {
+                final int from = Math.max(j0, i);
+                vectors.row(i, from, j1, row);
+                System.arraycopy(row, 0, data, distances.rowOffset(i) + (from - i), j1 - from);
+            }
+            ready.set(t, 1);
+        }
+    }
+}
@@ -10,11 +10,13 @@ import org.jetbrains.annotations.NotNull;
  */
 public final class GeocentricLatitude implements GeodeticToDoubleFunction {
 
-    @NotNull
-    private final Ellipsoid ell;
+    /**
+     * Квадрат отношения полуосей {@code (b / a)^2}.
+     */
+    private final double k2;
 
     public GeocentricLatitude(@NotNull final Ellipsoid ell) {
-        this.ell = ell;
+        k2 = FastMath.pow(ell.getB() / ell.getA(), 2);
     }
 
     /**
@@ -24,8 +26,17 @@ public final class GeocentricLatitude implements GeodeticToDoubleFunction {
      */
     @Override
     public double applyAsDouble(@NotNull final Geodetic pt) {
-        return FastMath.atan(FastMath.pow((ell.getB() / ell.getA()), 2)
-                * FastMath.tan(pt.latRad()));
+        return value(pt.latRad());
+    }
+
+    /**
+     * Вычисление сферической широты по геодезической.
+     *
+     * @param latRad геодезическая широта в радианах
+     * @return сферическая широта в радианах
+     */
+    public double value(final double latRad) {
+        return FastMath.atan(k2 * FastMath.tan(latRad));
     }
 
 }
@@ -1,6 +1,9 @@
 package by.geo.math;
 
 import by.geo.point.Geodetic;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.stream.IntStream;
 
 /**
  * Интерфейс представляет функцию, примимающую {@code Geodetic} аргумент
@@ -17,4 +20,34 @@ public interface GeodeticToDoubleFunction {
      */
     double applyAsDouble(final Geodetic pt);
 
+    /**
+     * Пакетное применение функции к точкам, заданным координатами.
+     *
+     * <p>По умолчанию точки обрабатываются параллельно по одной;
+     * реализации могут переопределить метод более быстрым
+     * пакетным расчетом.</p>
+     *
+     * @param lat широты точек в градусах
+     * @param lon долготы точек в градусах
+     * @param out массив для результатов
+     * @throws IllegalArgumentException если длины массивов различаются
+     */
+    default void applyAsDouble(@NotNull final double[] lat, @NotNull final double[] lon,
+                               @NotNull final double[] out) {
+        if (lon.length != lat.length || out.length != lat.length) {
+            throw new IllegalArgumentException("arrays length is not valid");
+        }
+        IntStream.range(0, lat.length).parallel().forEach(p ->
+                out[p] = applyAsDouble(new Geodetic() {
+                    @Override
+                    public double latDeg() {
+                        return lat[p];
+                    }
+
+                    @Override
+                    public double lonDeg() {
+                        return lon[p];
+                    }
+                }));
+    }
 }
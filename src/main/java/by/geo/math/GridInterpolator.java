@@ -0,0 +1,357 @@
+package by.geo.math;
+
+import by.geo.point.Geodetic;
+import by.geo.point.Grid;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Функция, осуществляющая полиномиальную интерполяцию по сетке значений.
+ *
+ * <p>Значение в точке вычисляется по полиному, коэффициенты которого
+ * (патч) определяются узлами окрестности ячейки. Пакетный режим
+ * {@link #interpolate(double[], double[], double[])} упорядочивает точки
+ * по ячейкам, поэтому патч каждой ячейки строится один раз на пакет,
+ * и обрабатывает точки параллельно.</p>
+ *
+ * <p>Узлы за границей грида, нужные для патча краевой ячейки,
+ * получаются линейной экстраполяцией.</p>
+ */
+public final class GridInterpolator implements GeodeticToDoubleFunction {
+
+    /**
+     * Размер пакета, начиная с которого точки обрабатываются параллельно.
+     */
+    private static final int PARALLEL_THRESHOLD = 4096;
+    private static final int CHUNK = 2048;
+
+    @NotNull
+    private final Grid grid;
+    @NotNull
+    private final Type type;
+
+    /**
+     * @param grid грид
+     * @param type тип интерполяции
+     */
+    public GridInterpolator(@NotNull final Grid grid, @NotNull final Type type) {
+        this.grid = grid;
+        this.type = type;
+    }
+
+    /**
+     * Получить значение, соответствующее координатам точки {@code pt}.
+     *
+     * @return интерполированное значение
+     * @throws IllegalArgumentException если точка вне грида
+     */
+    @Override
+    public double applyAsDouble(@NotNull final Geodetic pt) {
+        return value(pt.latDeg(), pt.lonDeg());
+    }
+
+    /**
+     * Получить значение, соответствующее координатам.
+     *
+     * @param latDeg широта в градусах
+     * @param lonDeg долгота в градусах
+     * @return интерполированное значение
+     * @throws IllegalArgumentException если точка вне грида
+     */
+    public double value(final double latDeg, final double lonDeg) {
+        if (!isValid(latDeg, lonDeg)) {
+            throw new IllegalArgumentException("pt is not valid");
+        }
+        final double y = (latDeg - grid.latMin()) / grid.deltaLat();
+        final double x = (lonDeg - grid.lonMin()) / grid.deltaLon();
+        final int i = cell(y, grid.rowNumber());
+        final int j = cell(x, grid.colNumber());
+
+        final double[] c = new double[type.k * type.k];
+        patch(i, j, c);
+        return evaluate(c, y - i, x - j);
+    }
+
+    /**
+     * Пакетная интерполяция.
+     *
+     * @param lat широты точек в градусах
+     * @param lon долготы точек в градусах
+     * @param out массив для интерполированных значений
+     * @throws IllegalArgumentException если длины массивов различаются
+     *                                  или точка вне грида
+     */
+    public void interpolate(@NotNull final double[] lat, @NotNull final double[] lon,
+                            @NotNull final double[] out) {
+        final int n = lat.length;
+        if (lon.length != n || out.length != n) {
+            throw new IllegalArgumentException("arrays length is not valid");
+        }
+        final long cols = grid.colNumber();
+        final boolean parallel = n >= PARALLEL_THRESHOLD;
+
+        final long[] cells = new long[n];
+        for (int p = 0; p < n; p++) {
+            if (!isValid(lat[p], lon[p])) {
+                throw new IllegalArgumentException("point " + p + " is not valid");
+            }
+            final int i = cell((lat[p] - grid.latMin()) / grid.deltaLat(), grid.rowNumber());
+            final int j = cell((lon[p] - grid.lonMin()) / grid.deltaLon(), grid.colNumber());
+            cells[p] = i * cols + j;
+        }
+
+        // точки упорядочиваются по ячейкам: если номер ячейки и номер
+        // точки помещаются в 63 бита, сортируются упакованные ключи
+        // (ячейка в старших битах, точка в младших), иначе - индексы
+        // точек по отдельному ключу ячейки
+        final int[] points = new int[n];
+        final int pointBits = 32 - Integer.numberOfLeadingZeros(Math.max(n - 1, 1));
+        final int cellBits = 64 - Long.numberOfLeadingZeros(Math.max(grid.rowNumber() * cols - 1, 1));
+        if (pointBits + cellBits <= 63) {
+            final long mask = (1L << pointBits) - 1;
+            for (int p = 0; p < n; p++) {
+                cells[p] = cells[p] << pointBits | p;
+            }
+            if (parallel) {
+                Arrays.parallelSort(cells);
+            } else {
+                Arrays.sort(cells);
+            }
+            for (int s = 0; s < n; s++) {
+                points[s] = (int) (cells[s] & mask);
+                cells[s] >>>= pointBits;
+            }
+        } else {
+            final long[] keys = cells.clone();
+            final int[] order = (parallel ? IntStream.range(0, n).parallel() : IntStream.range(0, n))
+                    .boxed()
+                    .sorted((a, b) -> Long.compare(keys[a], keys[b]))
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+            for (int s = 0; s < n; s++) {
+                points[s] = order[s];
+                cells[s] = keys[order[s]];
+            }
+        }
+
+        if (!parallel) {
+            run(cells, points, 0, n, lat, lon, out);
+        } else {
+            IntStream.range(0, (n + CHUNK - 1) / CHUNK).parallel()
+                    .forEach(c -> run(cells, points, c * CHUNK, Math.min(n, (c + 1) * CHUNK),
+                            lat, lon, out));
+        }
+    }
+
+    /**
+     * Пакетная интерполяция; то же, что
+     * {@link #interpolate(double[], double[], double[])}.
+     */
+    @Override
+    public void applyAsDouble(@NotNull final double[] lat, @NotNull final double[] lon,
+                              @NotNull final double[] out) {
+        interpolate(lat, lon, out);
+    }
+
+    /**
+     * Интерполяция точек {@code points[from..to)}, упорядоченных
+     * по номерам ячеек {@code cells}.
+     */
+    private void run(@NotNull final long[] cells, @NotNull final int[] points,
+                     final int from, final int to,
+                     @NotNull final double[] lat, @NotNull final double[] lon,
+                     @NotNull final double[] out) {
+        final double[] c = new double[type.k * type.k];
+        final long cols = grid.colNumber();
+        long prev = -1;
+        int i = 0, j = 0;
+
+        for (int s = from; s < to; s++) {
+            final long cell = cells[s];
+            final int p = points[s];
+            if (cell != prev) {
+                i = (int) (cell / cols);
+                j = (int) (cell % cols);
+                patch(i, j, c);
+                prev = cell;
+            }
+            out[p] = evaluate(c,
+                    (lat[p] - grid.latMin()) / grid.deltaLat() - i,
+                    (lon[p] - grid.lonMin()) / grid.deltaLon() - j);
+        }
+    }
+
+    private boolean isValid(final double B, final double L) {
+        return !(B < grid.latMin() || B > grid.latMax()
+                || L < grid.lonMin() || L > grid.lonMax());
+    }
+
+    /**
+     * Номер опорного узла ячейки по дробному индексу.
+     */
+    private int cell(final double f, final int size) {
+        return type.cell(f, size);
+    }
+
+    /**
+     * Коэффициенты полинома ячейки: {@code C = M * P * Mt},
+     * где {@code P} - значения узлов окрестности.
+     */
+    private void patch(final int i, final int j, @NotNull final double[] c) {
+        final int k = type.k;
+        final double[][] m = type.m;
+
+        // T = P * Mt
+        final double[] t = new double[k * k];
+        for (int r = 0; r < k; r++) {
+            for (int s = 0; s < k; s++) {
+                final double v = node(i + type.offset + r, j + type.offset + s);
+                for (int n = 0; n < k; n++) {
+                    t[r * k + n] += v * m[n][s];
+                }
+            }
+        }
+        Arrays.fill(c, 0.0);
+        for (int q = 0; q < k; q++) {
+            for (int r = 0; r < k; r++) {
+                final double w = m[q][r];
+                if (w == 0.0) continue;
+                for (int n = 0; n < k; n++) {
+                    c[q * k + n] += w * t[r * k + n];
+                }
+            }
+        }
+    }
+
+    /**
+     * Значение узла; за границей грида - линейная экстраполяция.
+     */
+    private double node(final int i, final int j) {
+        final int rows = grid.rowNumber();
+        final int cols = grid.colNumber();
+        if (i < 0 || i >= rows) {
+            final int e = i < 0 ? 0 : rows - 1;
+            if (rows == 1) return node(e, j);
+            final int in = i < 0 ? 1 : rows - 2;
+            final double v = node(e, j);
+            return v + Math.abs(i - e) * (v - node(in, j));
+        }
+        if (j < 0 || j >= cols) {
+            final int e = j < 0 ? 0 : cols - 1;
+            if (cols == 1) return grid.getValue(i, e);
+            final int in = j < 0 ? 1 : cols - 2;
+            final double v = grid.getValue(i, e);
+            return v + Math.abs(j - e) * (v - grid.getValue(i, in));
+        }
+        return grid.getValue(i, j);
+    }
+
+    private double evaluate(@NotNull final double[] c, final double fy, final double fx) {
+        final int k = type.k;
+        double r = 0.0;
+        for (int q = k - 1; q >= 0; q--) {
+            double row = 0.0;
+            for (int n = k - 1; n >= 0; n--) {
+                row = row * fx + c[q * k + n];
+            }
+            r = r * fy + row;
+        }
+        return r;
+    }
+
+    /**
+     * Тип интерполяции.
+     *
+     * <p>Задается матрицей {@code M}, переводящей значения {@code k}
+     * последовательных узлов в коэффициенты одномерного полинома
+     * степени {@code k - 1}.</p>
+     */
+    public enum Type {
+        /**
+         * Билинейная интерполяция по 4 узлам ячейки.
+         */
+        bilinear(0, false, new double[][]{
+                {1, 0},
+                {-1, 1}}),
+
+        /**
+         * Биквадратичная интерполяция по 9 узлам вокруг ближайшего узла.
+         *
+         * <p>Шаблон переключается на соседний узел посередине между
+         * узлами, поэтому интерполированная поверхность на линиях
+         * {@code i + 0.5} и {@code j + 0.5} имеет разрывы порядка
+         * третьих разностей значений узлов; в узлах она точна. Линейное
+         * смешение двух перекрывающихся квадратичных полиномов дает
+         * непрерывный {@link #bicubic}.</p>
+         */
+        biquadratic(-1, true, new double[][]{
+                {0, 1, 0},
+                {-0.5, 0, 0.5},
+                {0.5, -1, 0.5}}),
+
+        /**
+         * Бикубическая интерполяция Катмулла-Рома по 16 узлам.
+         */
+        bicubic(-1, false, new double[][]{
+                {0, 1, 0, 0},
+                {-0.5, 0, 0.5, 0},
+                {1, -2.5, 2, -0.5},
+                {-0.5, 1.5, -1.5, 0.5}});
+
+        private final int offset;
+        private final boolean centered;
+        @NotNull
+        private final double[][] m;
+        private final int k;
+
+        Type(final int offset, final boolean centered, @NotNull final double[][] m) {
+            this.offset = offset;
+            this.centered = centered;
+            this.m = m;
+            this.k = m.length;
+        }
+
+        /**
+         * Число узлов шаблона по одной оси.
+         */
+        int size() {
+            return k;
+        }
+
+        /**
+         * Смещение первого узла шаблона относительно опорного узла.
+         */
+        int offset() {
+            return offset;
+        }
+
+        /**
+         * Номер опорного узла ячейки по дробному индексу: для
+         * центрированного шаблона - ближайший узел (переключение
+         * на {@code f = i + 0.5} - источник разрыва), иначе - левый
+         * узел ячейки.
+         */
+        int cell(final double f, final int size) {
+            if (centered) {
+                return Math.min((int) (f + 0.5), size - 1);
+            }
+            return Math.max(0, Math.min((int) f, size - 2));
+        }
+
+        /**
+         * Веса узлов шаблона по одной оси:
+         * {@code w[r] = sum(M[q][r] * t^q)}.
+         */
+        void weights(final double t, @NotNull final double[] w) {
+            for (int r = 0; r < k; r++) {
+                double v = 0.0;
+                for (int q = k - 1; q >= 0; q--) {
+                    v = v * t + m[q][r];
+                }
+                w[r] = v;
+            }
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package by.geo.math;
+
+import by.geo.point.LayeredGrid;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Интерполяция всех слоев многослойного грида за один поиск ячейки.
+ *
+ * <p>Ячейка и веса узлов шаблона вычисляются один раз на точку,
+ * после чего значения всех слоев накапливаются за один проход
+ * по узлам шаблона. Узлы за границей грида учитываются линейной
+ * экстраполяцией, перенесенной на веса крайних узлов.</p>
+ */
+public final class LayeredInterpolator {
+
+    private static final int PARALLEL_THRESHOLD = 4096;
+    private static final int CHUNK = 2048;
+
+    @NotNull
+    private final LayeredGrid grid;
+    @NotNull
+    private final GridInterpolator.Type type;
+
+    private final double lat0, lon0, lat, lon, dlat, dlon;
+
+    /**
+     * @param grid многослойный грид
+     * @param type тип интерполяции
+     */
+    public LayeredInterpolator(@NotNull final LayeredGrid grid,
+                               @NotNull final GridInterpolator.Type type) {
+        this.grid = grid;
+        this.type = type;
+
+        lat0 = grid.layer(0).latMin();
+        lon0 = grid.layer(0).lonMin();
+        lat = grid.layer(0).latMax();
+        lon = grid.layer(0).lonMax();
+        dlat = grid.layer(0).deltaLat();
+        dlon = grid.layer(0).deltaLon();
+    }
+
+    /**
+     * Значения всех слоев в точке.
+     *
+     * @param latDeg широта в градусах
+     * @param lonDeg долгота в градусах
+     * @param out    массив длиной не менее {@code layers}
+     * @throws IllegalArgumentException если точка вне грида
+     */
+    public void values(final double latDeg, final double lonDeg, @NotNull final double[] out) {
+        if (!isValid(latDeg, lonDeg)) {
+            throw new IllegalArgumentException("pt is not valid");
+        }
+        new Stencil().values(latDeg, lonDeg, out);
+    }
+
+    /**
+     * Пакетная интерполяция всех слоев.
+     *
+     * @param lat широты точек в градусах
+     * @param lon долготы точек в градусах
+     * @param out массивы значений по слоям: {@code out[k][p]}
+     * @throws IllegalArgumentException если размеры массивов не согласованы
+     *                                  или точка вне грида
+     */
+    public void interpolate(@NotNull final double[] lat, @NotNull final double[] lon,
+                            @NotNull final double[][] out) {
+        final int n = lat.length;
+        if (lon.length != n || out.length != grid.layers()) {
+            throw new IllegalArgumentException("arrays length is not valid");
+        }
+        for (double[] o : out) {
+            if (o.length != n) {
+                throw new IllegalArgumentException("arrays length is not valid");
+            }
+        }
+        for (int p = 0; p < n; p++) {
+            if (!isValid(lat[p], lon[p])) {
+                throw new IllegalArgumentException("point " + p + " is not valid");
+            }
+        }
+
+        if (n < PARALLEL_THRESHOLD) {
+            run(0, n, lat, lon, out);
+        } else {
+            IntStream.range(0, (n + CHUNK - 1) / CHUNK).parallel()
+                    .forEach(c -> run(c * CHUNK, Math.min(n, (c + 1) * CHUNK), lat, lon, out));
+        }
+    }
+
+    private void run(final int from, final int to,
+                     @NotNull final double[] lat, @NotNull final double[] lon,
+                     @NotNull final double[][] out) {
+        final Stencil s = new Stencil();
+        final double[] v = new double[grid.layers()];
+        for (int p = from; p < to; p++) {
+            s.values(lat[p], lon[p], v);
+            for (int k = 0; k < v.length; k++) {
+                out[k][p] = v[k];
+            }
+        }
+    }
+
+    private boolean isValid(final double B, final double L) {
+        return !(B < lat0 || B > lat || L < lon0 || L > lon);
+    }
+
+    /**
+     * Рабочие массивы шаблона одного потока.
+     */
+    private final class Stencil {
+        private final int k = type.size();
+        private final double[] wy = new double[k], wx = new double[k];
+        private final int[] iy = new int[k], ix = new int[k];
+
+        void values(final double B, final double L, @NotNull final double[] out) {
+            final double y = (B - lat0) / dlat;
+            final double x = (L - lon0) / dlon;
+            final int i = type.cell(y, grid.rowNumber());
+            final int j = type.cell(x, grid.colNumber());
+
+            type.weights(y - i, wy);
+            type.weights(x - j, wx);
+            final int ny = fold(i + type.offset(), grid.rowNumber(), wy, iy);
+            final int nx = fold(j + type.offset(), grid.colNumber(), wx, ix);
+
+            Arrays.fill(out, 0, grid.layers(), 0.0);
+            for (int r = 0; r < ny; r++) {
+                for (int s = 0; s < nx; s++) {
+                    grid.accumulate(iy[r], ix[s], wy[r] * wx[s], out);
+                }
+            }
+        }
+
+        /**
+         * Перенести веса узлов за границей грида на крайние узлы
+         * (линейная экстраполяция) и сжать шаблон до узлов внутри грида.
+         *
+         * @return число узлов шаблона внутри грида
+         */
+        private int fold(final int first, final int size,
+                         @NotNull final double[] w, @NotNull final int[] idx) {
+            if (first >= 0 && first + k <= size) {
+                for (int r = 0; r < k; r++) {
+                    idx[r] = first + r;
+                }
+                return k;
+            }
+            // накопитель для узлов [base, base + k + 2)
+            final int base = Math.max(0, first - 1);
+            final double[] acc = new double[k + 2];
+            for (int r = 0; r < k; r++) {
+                final int n = first + r;
+                if (n >= 0 && n < size) {
+                    acc[n - base] += w[r];
+                } else if (size == 1) {
+                    acc[0] += w[r];
+                } else {
+                    final int e = n < 0 ? 0 : size - 1;
+                    final int in = n < 0 ? 1 : size - 2;
+                    final int d = Math.abs(n - e);
+                    acc[e - base] += w[r] * (1 + d);
+                    acc[in - base] -= w[r] * d;
+                }
+            }
+            int m = 0;
+            for (int n = base; n < Math.min(size, base + k + 2); n++) {
+                if (acc[n - base] != 0.0) {
+                    idx[m] = n;
+                    w[m] = acc[n - base];
+                    m++;
+                }
+            }
+            return m;
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package by.geo.math;
+
+import org.apache.commons.math3.exception.DimensionMismatchException;
+import org.apache.commons.math3.linear.NonPositiveDefiniteMatrixException;
+import org.apache.commons.math3.util.FastMath;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.stream.IntStream;
+
+/**
+ * Разложение Холецкого {@code C = U^T U} симметричной положительно
+ * определенной матрицы, хранящей верхний треугольник
+ * ({@link PackedSymmetricMatrix}).
+ *
+ * <p>Множитель {@code U} записывается на место исходной матрицы, так
+ * что строка {@code i} множителя, как и строка матрицы, лежит в массиве
+ * подряд от диагонали. Разложение блочное: для каждой полосы из
+ * {@link #BLOCK} строк раскладывается диагональный блок, затем
+ * вычисляется остаток полосы и обновляется оставшийся треугольник;
+ * остаток полосы считается параллельно по столбцам, обновление - по
+ * строкам. Все внутренние циклы идут по непрерывным участкам строк.</p>
+ *
+ * <p>Обратная матрица не строится: системы решаются прямой и обратной
+ * подстановкой. Попутно находится оценка числа обусловленности
+ * {@code (max U_ii / min U_ii)^2} - нижняя граница спектрального
+ * числа обусловленности {@code C}.</p>
+ */
+public final class PackedCholesky {
+
+    /**
+     * Число строк полосы.
+     */
+    private static final int BLOCK = 64;
+
+    private final int n;
+    @NotNull
+    private final PackedSymmetricMatrix factor;
+    @NotNull
+    private final double[] data;
+    private final double condition;
+
+    /**
+     * Разложить матрицу на месте; после разложения матрица хранит
+     * множитель {@code U} и прежних значений не имеет.
+     *
+     * @param matrix симметричная положительно определенная матрица
+     * @throws NonPositiveDefiniteMatrixException если матрица
+     *                                            не положительно определена
+     */
+    public PackedCholesky(@NotNull final PackedSymmetricMatrix matrix) {
+        n = matrix.getRowDimension();
+        factor = matrix;
+        data = matrix.data();
+
+        for (int k0 = 0; k0 < n; k0 += BLOCK) {
+            final int k1 = Math.min(n, k0 + BLOCK);
+            diagonal(k0, k1);
+            if (k1 < n) {
+                panel(k0, k1);
+                update(k0, k1);
+            }
+        }
+
+        double min = Double.POSITIVE_INFINITY, max = 0.0;
+        for (int i = 0; i < n; i++) {
+            final double u = data[factor.rowOffset(i)];
+            min = FastMath.min(min, u);
+            max = FastMath.max(max, u);
+        }
+        condition = n == 0 ? 1.0 : FastMath.pow(max / min, 2);
+    }
+
+    /**
+     * Разложение диагонального блока {@code [k0, k1)} и деление строк
+     * блока внутри него.
+     */
+    private void diagonal(final int k0, final int k1) {
+        for (int i = k0; i < k1; i++) {
+            final int ii = factor.rowOffset(i);
+            final double d = data[ii];
+            if (!(d > 0)) {
+                throw new NonPositiveDefiniteMatrixException(d, i, 0.0);
+            }
+            final double u = FastMath.sqrt(d);
+            data[ii] = u;
+            final int len = k1 - i - 1;
+            for (int q = 1; q <= len; q++) {
+                data[ii + q] /= u;
+            }
+            // строки j > i блока: a(j, j..k1) -= u(i, j) * u(i, j..k1)
+            for (int j = i + 1; j < k1; j++) {
+                final double a = data[ii + (j - i)];
+                final int jj = factor.rowOffset(j);
+                final int src = ii + (j - i);
+                for (int q = 0; q < k1 - j; q++) {
+                    data[jj + q] -= a * data[src + q];
+                }
+            }
+        }
+    }
+
+    /**
+     * Строки полосы {@code [k0, k1)} правее диагонального блока:
+     * решение {@code U_kk^T X = A_kj}, параллельно по участкам столбцов.
+     */
+    private void panel(final int k0, final int k1) {
+        final int chunks = (n - k1 + BLOCK - 1) / BLOCK;
+        IntStream.range(0, chunks).parallel().forEach(c -> {
+            final int j0 = k1 + c * BLOCK, j1 = Math.min(n, j0 + BLOCK);
+            for (int i = k0; i < k1; i++) {
+                final int ii = factor.rowOffset(i);
+                final double u = data[ii];
+                final int row = ii + (j0 - i);
+                for (int q = 0; q < j1 - j0; q++) {
+                    data[row + q] /= u;
+                }
+                for (int p = i + 1; p < k1; p++) {
+                    final double a = data[ii + (p - i)];
+                    final int dst = factor.rowOffset(p) + (j0 - p);
+                    for (int q = 0; q < j1 - j0; q++) {
+                        data[dst + q] -= a * data[row + q];
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Обновление оставшегося треугольника {@code A_jj -= U_kj^T U_kj},
+     * параллельно по строкам.
+     */
+    private void update(final int k0, final int k1) {
+        IntStream.range(k1, n).parallel().forEach(i -> {
+            final int dst = factor.rowOffset(i);
+            final int len = n - i;
+            for (int p = k0; p < k1; p++) {
+                final int src = factor.rowOffset(p) + (i - p);
+                final double a = data[src];
+                if (a != 0.0) {
+                    for (int q = 0; q < len; q++) {
+                        data[dst + q] -= a * data[src + q];
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * @return порядок матрицы
+     */
+    public int size() {
+        return n;
+    }
+
+    /**
+     * @return оценка числа обусловленности {@code (max U_ii / min U_ii)^2}
+     */
+    public double conditionEstimate() {
+        return condition;
+    }
+
+    /**
+     * Прямая подстановка: решение {@code U^T y = b} на месте.
+     *
+     * @param b правая часть; заменяется решением
+     * @throws DimensionMismatchException если длина не равна порядку
+     */
+    public void forward(@NotNull final double[] b) {
+        check(b);
+        for (int p = 0; p < n; p++) {
+            final int pp = factor.rowOffset(p);
+            final double y = b[p] / data[pp];
+            b[p] = y;
+            if (y != 0.0) {
+                for (int j = p + 1; j < n; j++) {
+                    b[j] -= data[pp + (j - p)] * y;
+                }
+            }
+        }
+    }
+
+    /**
+     * Обратная подстановка: решение {@code U x = y} на месте.
+     *
+     * @param y правая часть; заменяется решением
+     * @throws DimensionMismatchException если длина не равна порядку
+     */
+    public void backward(@NotNull final double[] y) {
+        check(y);
+        for (int i = n - 1; i >= 0; i--) {
+            final int ii = factor.rowOffset(i);
+            double sum = y[i];
+            for (int j = i + 1; j < n; j++) {
+                sum -= data[ii + (j - i)] * y[j];
+            }
+            y[i] = sum / data[ii];
+        }
+    }
+
+    /**
+     * Решение {@code C x = b} двумя подстановками.
+     *
+     * @param b правая часть
+     * @return решение
+     * @throws DimensionMismatchException если длина не равна порядку
+     */
+    @NotNull
+    public double[] solve(@NotNull final double[] b) {
+        final double[] x = b.clone();
+        forward(x);
+        backward(x);
+        return x;
+    }
+
+    private void check(@NotNull final double[] b) {
+        if (b.length != n) {
+            throw new DimensionMismatchException(b.length, n);
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package by.geo.math;
+
+import org.apache.commons.math3.exception.DimensionMismatchException;
+import org.apache.commons.math3.exception.OutOfRangeException;
+import org.apache.commons.math3.linear.AbstractRealMatrix;
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Симметричная матрица, хранящая только верхний треугольник.
+ *
+ * <p>Элементы строки {@code i} от диагонали до конца строки хранятся
+ * подряд в одном массиве, строки следуют одна за другой. Матрица
+ * порядка {@code n} занимает {@code n(n+1)/2} чисел - почти вдвое
+ * меньше полной. Запись элемента {@code (i, j)} меняет и элемент
+ * {@code (j, i)}.</p>
+ */
+public final class PackedSymmetricMatrix extends AbstractRealMatrix {
+
+    private final int n;
+    @NotNull
+    private final double[] data;
+
+    /**
+     * Нулевая матрица.
+     *
+     * @param n порядок матрицы
+     * @throws IllegalArgumentException если порядок отрицательный
+     *                                  или матрица не помещается в массив
+     */
+    public PackedSymmetricMatrix(final int n) {
+        if (n < 0) {
+            throw new IllegalArgumentException("n is not valid");
+        }
+        final long length = (long) n * (n + 1) / 2;
+        if (length > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("matrix is too large");
+        }
+        this.n = n;
+        this.data = new double[(int) length];
+    }
+
+    private PackedSymmetricMatrix(final int n, @NotNull final double[] data) {
+        this.n = n;
+        this.data = data;
+    }
+
+    /**
+     * Номер элемента {@code (i, j)}, {@code i <= j}, в массиве.
+     */
+    private int index(final int i, final int j) {
+        return (int) ((long) i * (2L * n - i + 1) / 2) + (j - i);
+    }
+
+    /**
+     * Номер элемента {@code (i, i)} в массиве; элементы
+     * {@code (i, j)}, {@code j > i}, следуют за ним подряд.
+     *
+     * @param i номер строки
+     * @return номер диагонального элемента
+     */
+    public int rowOffset(final int i) {
+        return index(i, i);
+    }
+
+    /**
+     * Хранимый верхний треугольник по строкам; изменения массива
+     * меняют матрицу.
+     *
+     * @return массив элементов
+     */
+    @NotNull
+    public double[] data() {
+        return data;
+    }
+
+    /**
+     * Прибавить к диагонали.
+     *
+     * @param d прибавляемые значения
+     * @throws IllegalArgumentException если длина массива не равна порядку
+     */
+    public void addToDiagonal(@NotNull final double[] d) {
+        if (d.length != n) {
+            throw new IllegalArgumentException("diagonal length is not valid");
+        }
+        for (int i = 0; i < n; i++) {
+            data[index(i, i)] += d[i];
+        }
+    }
+
+    @Override
+    public int getRowDimension() {
+        return n;
+    }
+
+    @Override
+    public int getColumnDimension() {
+        return n;
+    }
+
+    @Override
+    public double getEntry(final int row, final int column) {
+        check(row, column);
+        return row <= column ? data[index(row, column)] : data[index(column, row)];
+    }
+
+    @Override
+    public void setEntry(final int row, final int column, final double value) {
+        check(row, column);
+        data[row <= column ? index(row, column) : index(column, row)] = value;
+    }
+
+    @Override
+    public void addToEntry(final int row, final int column, final double increment) {
+        check(row, column);
+        data[row <= column ? index(row, column) : index(column, row)] += increment;
+    }
+
+    @Override
+    public void multiplyEntry(final int row, final int column, final double factor) {
+        check(row, column);
+        data[row <= column ? index(row, column) : index(column, row)] *= factor;
+    }
+
+    @Override
+    @NotNull
+    public RealMatrix createMatrix(final int rowDimension, final int columnDimension) {
+        return new Array2DRowRealMatrix(rowDimension, columnDimension);
+    }
+
+    @Override
+    @NotNull
+    public PackedSymmetricMatrix copy() {
+        return new PackedSymmetricMatrix(n, data.clone());
+    }
+
+    @Override
+    @NotNull
+    public double[][] getData() {
+        final double[][] out = new double[n][n];
+        int p = 0;
+        for (int i = 0; i < n; i++) {
+            for (int j = i; j < n; j++) {
+                final double v = data[p++];
+                out[i][j] = v;
+                out[j][i] = v;
+            }
+        }
+        return out;
+    }
+
+    @Override
+    @NotNull
+    public double[] operate(@NotNull final double[] v) {
+        if (v.length != n) {
+            throw new DimensionMismatchException(v.length, n);
+        }
+        final double[] out = new double[n];
+        int p = 0;
+        for (int i = 0; i < n; i++) {
+            final double vi = v[i];
+            double sum = data[p++] * vi;
+            for (int j = i + 1; j < n; j++) {
+                final double a = data[p++];
+                sum += a * v[j];
+                out[j] += a * vi;
+            }
+            out[i] += sum;
+        }
+        return out;
+    }
+
+    private void check(final int row, final int column) {
+        if (row < 0 || row >= n) {
+            throw new OutOfRangeException(row, 0, n - 1);
+        }
+        if (column < 0 || column >= n) {
+            throw new OutOfRangeException(column, 0, n - 1);
+        }
+    }
+}
@@ -0,0 +1,453 @@
+package by.geo.math;
+
+import by.geo.point.Geodetic;
+import by.geo.ref.Ellipsoid;
+import org.apache.commons.math3.util.FastMath;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Пространственный индекс точек на сфере геоцентрических широт.
+ *
+ * <p>k-d дерево по единичным векторам точек ({@link UnitVectors}):
+ * узел делит точки медианой по оси наибольшего разброса. Дерево
+ * неявное - точки переставлены так, что медиана диапазона
+ * {@code [lo, hi)} лежит в его середине; строится за {@code O(N log N)}.
+ * Поиск сравнивает квадраты хорд, что равносильно сравнению
+ * сферических расстояний; расстояния возвращаются в градусах,
+ * как у {@link SphericalDistance}.</p>
+ *
+ * <p>Дерево неизменяемо, запросы можно выполнять параллельно.</p>
+ */
+public final class SphereTree {
+
+    /**
+     * Наибольшее число точек в листе.
+     */
+    private static final int LEAF = 8;
+
+    @NotNull
+    private final GeocentricLatitude geocentricLatitude;
+    @NotNull
+    private final double[] x, y, z;
+    @NotNull
+    private final int[] index;
+    @NotNull
+    private final byte[] axes;
+    /**
+     * Позиции точек в дереве по их номерам.
+     */
+    @NotNull
+    private final int[] positions;
+
+    /**
+     * @param points точки
+     * @param ell    эллипсоид
+     */
+    public SphereTree(@NotNull final List<? extends Geodetic> points, @NotNull final Ellipsoid ell) {
+        geocentricLatitude = new GeocentricLatitude(ell);
+
+        final UnitVectors vectors = new UnitVectors(points, ell);
+        final int n = vectors.size();
+        x = new double[n];
+        y = new double[n];
+        z = new double[n];
+        index = new int[n];
+        axes = new byte[n];
+        for (int k = 0; k < n; k++) {
+            x[k] = vectors.x(k);
+            y[k] = vectors.y(k);
+            z[k] = vectors.z(k);
+            index[k] = k;
+        }
+        build(0, n);
+
+        positions = new int[n];
+        for (int k = 0; k < n; k++) {
+            positions[index[k]] = k;
+        }
+    }
+
+    /**
+     * @return число точек
+     */
+    public int size() {
+        return index.length;
+    }
+
+    /**
+     * Ближайшие точки.
+     *
+     * @param latDeg широта в градусах
+     * @param lonDeg долгота в градусах
+     * @param k      число точек
+     * @return номера не более {@code k} точек в порядке удаления
+     */
+    @NotNull
+    public int[] nearest(final double latDeg, final double lonDeg, final int k) {
+        final double[] q = vector(latDeg, lonDeg);
+        return nearest(q[0], q[1], q[2], k, -1).indices();
+    }
+
+    /**
+     * Ближайшие к точке набора другие точки.
+     *
+     * @param i номер точки
+     * @param k число точек
+     * @return номера не более {@code k} точек, кроме {@code i}, в порядке удаления
+     */
+    @NotNull
+    public int[] neighbours(final int i, final int k) {
+        final int p = position(i);
+        return nearest(x[p], y[p], z[p], k, i).indices();
+    }
+
+    /**
+     * Расстояние от точки набора до ближайшей другой точки.
+     *
+     * @param i номер точки
+     * @return расстояние в градусах; {@code NaN}, если других точек нет
+     */
+    public double nearestDistance(final int i) {
+        final int p = position(i);
+        final Heap heap = nearest(x[p], y[p], z[p], 1, i);
+        return heap.size == 0 ? Double.NaN : UnitVectors.angle(heap.d2[0]);
+    }
+
+    /**
+     * Точки в пределах расстояния.
+     *
+     * @param latDeg    широта в градусах
+     * @param lonDeg    долгота в градусах
+     * @param radiusDeg расстояние в градусах
+     * @return номера точек по возрастанию
+     */
+    @NotNull
+    public int[] within(final double latDeg, final double lonDeg, final double radiusDeg) {
+        final double[] q = vector(latDeg, lonDeg);
+        final Found found = new Found();
+        within(0, size(), q[0], q[1], q[2], chord2(radiusDeg), found);
+        final int[] out = Arrays.copyOf(found.items, found.size);
+        Arrays.sort(out);
+        return out;
+    }
+
+    /**
+     * Другие точки набора в пределах расстояния от точки набора.
+     *
+     * @param i         номер точки
+     * @param radiusDeg расстояние в градусах
+     * @return номера точек, кроме {@code i}, в порядке обхода дерева
+     */
+    @NotNull
+    public int[] within(final int i, final double radiusDeg) {
+        final int p = position(i);
+        final Found found = new Found();
+        within(0, size(), x[p], y[p], z[p], chord2(radiusDeg), found);
+        final int[] out = new int[found.size - 1];
+        int k = 0;
+        for (int m = 0; m < found.size; m++) {
+            if (found.items[m] != i) {
+                out[k++] = found.items[m];
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Есть ли точка в пределах расстояния.
+     *
+     * @param latDeg    широта в градусах
+     * @param lonDeg    долгота в градусах
+     * @param radiusDeg расстояние в градусах
+     * @return {@code true}, если хотя бы одна точка не дальше {@code radiusDeg}
+     */
+    public boolean isNear(final double latDeg, final double lonDeg, final double radiusDeg) {
+        final double[] q = vector(latDeg, lonDeg);
+        return any(0, size(), q[0], q[1], q[2], chord2(radiusDeg));
+    }
+
+    @NotNull
+    private double[] vector(final double latDeg, final double lonDeg) {
+        final double phi = geocentricLatitude.value(FastMath.toRadians(latDeg));
+        final double lon = FastMath.toRadians(lonDeg);
+        final double c = FastMath.cos(phi);
+        return new double[]{c * FastMath.cos(lon), c * FastMath.sin(lon), FastMath.sin(phi)};
+    }
+
+    /**
+     * Квадрат хорды единичной сферы по углу в градусах.
+     */
+    private static double chord2(final double deg) {
+        if (!(deg >= 0)) {
+            throw new IllegalArgumentException("radius is not valid");
+        }
+        if (deg >= 180) {
+            return 4.0;
+        }
+        final double s = FastMath.sin(FastMath.toRadians(deg) / 2);
+        return 4 * s * s;
+    }
+
+    /**
+     * Позиция точки с номером {@code i} в дереве.
+     */
+    private int position(final int i) {
+        if (i < 0 || i >= index.length) {
+            throw new IndexOutOfBoundsException("point " + i);
+        }
+        return positions[i];
+    }
+
+    private double coord(final int axis, final int p) {
+        return axis == 0 ? x[p] : axis == 1 ? y[p] : z[p];
+    }
+
+    private double d2(final int p, final double qx, final double qy, final double qz) {
+        final double dx = qx - x[p], dy = qy - y[p], dz = qz - z[p];
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    private void build(final int lo, final int hi) {
+        if (hi - lo <= LEAF) {
+            return;
+        }
+        final int axis = widest(lo, hi);
+        final int mid = (lo + hi) >>> 1;
+        select(lo, hi - 1, mid, axis);
+        axes[mid] = (byte) axis;
+        build(lo, mid);
+        build(mid + 1, hi);
+    }
+
+    /**
+     * Ось наибольшего разброса координат диапазона.
+     */
+    private int widest(final int lo, final int hi) {
+        double minX = x[lo], maxX = minX, minY = y[lo], maxY = minY, minZ = z[lo], maxZ = minZ;
+        for (int p = lo + 1; p < hi; p++) {
+            minX = Math.min(minX, x[p]);
+            maxX = Math.max(maxX, x[p]);
+            minY = Math.min(minY, y[p]);
+            maxY = Math.max(maxY, y[p]);
+            minZ = Math.min(minZ, z[p]);
+            maxZ = Math.max(maxZ, z[p]);
+        }
+        final double sx = maxX - minX, sy = maxY - minY, sz = maxZ - minZ;
+        return sx >= sy && sx >= sz ? 0 : sy >= sz ? 1 : 2;
+    }
+
+    /**
+     * Частичная сортировка Хоара: на место {@code k} ставится
+     * {@code k}-й по оси элемент диапазона {@code [left, right]},
+     * слева от него не большие, справа не меньшие.
+     */
+    private void select(int left, int right, final int k, final int axis) {
+        while (right > left) {
+            final double pivot = coord(axis, (left + right) >>> 1);
+            int i = left, j = right;
+            while (i <= j) {
+                while (coord(axis, i) < pivot) i++;
+                while (coord(axis, j) > pivot) j--;
+                if (i <= j) {
+                    swap(i++, j--);
+                }
+            }
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void swap(final int a, final int b) {
+        double t = x[a];
+        x[a] = x[b];
+        x[b] = t;
+        t = y[a];
+        y[a] = y[b];
+        y[b] = t;
+        t = z[a];
+        z[a] = z[b];
+        z[b] = t;
+        final int s = index[a];
+        index[a] = index[b];
+        index[b] = s;
+    }
+
+    @NotNull
+    private Heap nearest(final double qx, final double qy, final double qz,
+                         final int k, final int exclude) {
+        if (k < 0) {
+            throw new IllegalArgumentException("k is not valid");
+        }
+        final Heap heap = new Heap(Math.min(k, size()));
+        if (k > 0) {
+            nearest(0, size(), qx, qy, qz, exclude, heap);
+        }
+        return heap;
+    }
+
+    private void nearest(final int lo, final int hi, final double qx, final double qy,
+                         final double qz, final int exclude, @NotNull final Heap heap) {
+        if (hi - lo <= LEAF) {
+            for (int p = lo; p < hi; p++) {
+                if (index[p] != exclude) {
+                    heap.offer(d2(p, qx, qy, qz), index[p]);
+                }
+            }
+            return;
+        }
+        final int mid = (lo + hi) >>> 1;
+        if (index[mid] != exclude) {
+            heap.offer(d2(mid, qx, qy, qz), index[mid]);
+        }
+        final int axis = axes[mid];
+        final double diff = (axis == 0 ? qx : axis == 1 ? qy : qz) - coord(axis, mid);
+        if (diff < 0) {
+            nearest(lo, mid, qx, qy, qz, exclude, heap);
+            if (diff * diff < heap.bound()) {
+                nearest(mid + 1, hi, qx, qy, qz, exclude, heap);
+            }
+        } else {
+            nearest(mid + 1, hi, qx, qy, qz, exclude, heap);
+            if (diff * diff < heap.bound()) {
+                nearest(lo, mid, qx, qy, qz, exclude, heap);
+            }
+        }
+    }
+
+    private void within(final int lo, final int hi, final double qx, final double qy,
+                        final double qz, final double r2, @NotNull final Found found) {
+        if (hi - lo <= LEAF) {
+            for (int p = lo; p < hi; p++) {
+                if (d2(p, qx, qy, qz) <= r2) {
+                    found.add(index[p]);
+                }
+            }
+            return;
+        }
+        final int mid = (lo + hi) >>> 1;
+        if (d2(mid, qx, qy, qz) <= r2) {
+            found.add(index[mid]);
+        }
+        final int axis = axes[mid];
+        final double diff = (axis == 0 ? qx : axis == 1 ? qy : qz) - coord(axis, mid);
+        if (diff <= 0 || diff * diff <= r2) {
+            within(lo, mid, qx, qy, qz, r2, found);
+        }
+        if (diff >= 0 || diff * diff <= r2) {
+            within(mid + 1, hi, qx, qy, qz, r2, found);
+        }
+    }
+
+    private boolean any(final int lo, final int hi, final double qx, final double qy,
+                        final double qz, final double r2) {
+        if (hi - lo <= LEAF) {
+            for (int p = lo; p < hi; p++) {
+                if (d2(p, qx, qy, qz) <= r2) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        final int mid = (lo + hi) >>> 1;
+        if (d2(mid, qx, qy, qz) <= r2) {
+            return true;
+        }
+        final int axis = axes[mid];
+        final double diff = (axis == 0 ? qx : axis == 1 ? qy : qz) - coord(axis, mid);
+        if (diff < 0) {
+            return any(lo, mid, qx, qy, qz, r2)
+                    || diff * diff <= r2 && any(mid + 1, hi, qx, qy, qz, r2);
+        }
+        return any(mid + 1, hi, qx, qy, qz, r2)
+                || diff * diff <= r2 && any(lo, mid, qx, qy, qz, r2);
+    }
+
+    /**
+     * Ограниченная куча ближайших точек: в корне наиболее удаленная.
+     */
+    private static final class Heap {
+        private final double[] d2;
+        private final int[] items;
+        private int size;
+
+        Heap(final int capacity) {
+            d2 = new double[capacity];
+            items = new int[capacity];
+        }
+
+        /**
+         * Квадрат хорды, дальше которого точки не нужны.
+         */
+        double bound() {
+            return size < d2.length ? Double.POSITIVE_INFINITY : d2[0];
+        }
+
+        void offer(final double d, final int item) {
+            if (size < d2.length) {
+                int c = size++;
+                while (c > 0) {
+                    final int parent = (c - 1) >>> 1;
+                    if (d2[parent] >= d) break;
+                    d2[c] = d2[parent];
+                    items[c] = items[parent];
+                    c = parent;
+                }
+                d2[c] = d;
+                items[c] = item;
+            } else if (d < d2[0]) {
+                int c = 0;
+                while (true) {
+                    int child = 2 * c + 1;
+                    if (child >= size) break;
+                    if (child + 1 < size && d2[child + 1] > d2[child]) child++;
+                    if (d2[child] <= d) break;
+                    d2[c] = d2[child];
+                    items[c] = items[child];
+                    c = child;
+                }
+                d2[c] = d;
+                items[c] = item;
+            }
+        }
+
+        /**
+         * Номера точек в порядке удаления.
+         */
+        @NotNull
+        int[] indices() {
+            final Integer[] order = new Integer[size];
+            for (int k = 0; k < size; k++) {
+                order[k] = k;
+            }
+            Arrays.sort(order, (a, b) -> Double.compare(d2[a], d2[b]));
+            final int[] out = new int[size];
+            for (int k = 0; k < size; k++) {
+                out[k] = items[order[k]];
+            }
+            return out;
+        }
+    }
+
+    /**
+     * Найденные точки.
+     */
+    private static final class Found {
+        private int[] items = new int[16];
+        private int size;
+
+        void add(final int item) {
+            if (size == items.length) {
+                items = Arrays.copyOf(items, size * 2);
+            }
+            items[size++] = item;
+        }
+    }
+}
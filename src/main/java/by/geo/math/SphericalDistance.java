@@ -6,7 +6,10 @@ import org.apache.commons.math3.util.FastMath;
 import org.jetbrains.annotations.NotNull;
 
 /**
- *    .
+ * Функция вычисления сферического расстояния.
+ *
+ * <p>Для многократных расчетов по одному набору точек
+ * следует использовать {@link UnitVectors}.</p>
  */
 public class SphericalDistance implements GeodeticToDoubleBiFunction {
 
@@ -17,7 +20,9 @@ public class SphericalDistance implements GeodeticToDoubleBiFunction {
     }
 
     /**
-     *    .
+     * Функция вычисления сферического расстояния.
+     *
+     * @return расстояние в градусах
      */
     @Override
     public double applyAsDouble(final Geodetic pt1, final Geodetic pt2) {
@@ -25,15 +30,13 @@ public class SphericalDistance implements GeodeticToDoubleBiFunction {
         final double phiA = geocentricLatitude.applyAsDouble(pt1);
         final double phiB = geocentricLatitude.applyAsDouble(pt2);
 
-        final double lonA = pt1.lonRad();
-        final double lonB = pt2.lonRad();
+        final double cosA = FastMath.cos(phiA);
+        final double cosB = FastMath.cos(phiB);
 
-        final double x1 = FastMath.pow(FastMath.sin((phiA - phiB) / 2), 2);
-        final double x2 = FastMath.pow(FastMath.sin((lonA - lonB) / 2), 2);
-        final double x3 = FastMath.cos(phiA) * FastMath.cos(phiB);
+        final double dx = cosA * FastMath.cos(pt1.lonRad()) - cosB * FastMath.cos(pt2.lonRad());
+        final double dy = cosA * FastMath.sin(pt1.lonRad()) - cosB * FastMath.sin(pt2.lonRad());
+        final double dz = FastMath.sin(phiA) - FastMath.sin(phiB);
 
-        final double x4 = FastMath.sqrt(x1 + x2 * x3);
-
-        return FastMath.toDegrees(2 * FastMath.asin(x4));
+        return UnitVectors.angle(dx * dx + dy * dy + dz * dz);
     }
 }
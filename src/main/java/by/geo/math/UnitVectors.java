@@ -0,0 +1,171 @@
+package by.geo.math;
+
+import by.geo.point.Geodetic;
+import by.geo.ref.Ellipsoid;
+import org.apache.commons.math3.util.FastMath;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Единичные векторы точек на сфере геоцентрических широт.
+ *
+ * <p>Координаты {@code x, y, z} вычисляются один раз на точку, после
+ * чего сферическое расстояние пары находится по квадрату хорды
+ * {@code c^2 = |a - b|^2}: для углов до 60 градусов как
+ * {@code 2 asin(c / 2)}, что точно и для близких точек, для больших
+ * углов - как {@code acos(1 - c^2 / 2)}. Результат совпадает с
+ * {@link SphericalDistance} с точностью округления.</p>
+ *
+ * <p>Пакетные методы заполняют массив расстояний от одной точки до
+ * многих: сначала квадраты хорд простым циклом, который JIT может
+ * векторизовать, затем углы.</p>
+ */
+public final class UnitVectors {
+
+    /**
+     * Размер набора, начиная с которого векторы вычисляются параллельно.
+     */
+    private static final int PARALLEL_THRESHOLD = 4096;
+
+    @NotNull
+    private final double[] x, y, z;
+
+    /**
+     * @param points точки
+     * @param ell    эллипсоид
+     */
+    public UnitVectors(@NotNull final List<? extends Geodetic> points, @NotNull final Ellipsoid ell) {
+        final int n = points.size();
+        x = new double[n];
+        y = new double[n];
+        z = new double[n];
+        final GeocentricLatitude geocentricLatitude = new GeocentricLatitude(ell);
+        range(n).forEach(k -> {
+            final Geodetic pt = points.get(k);
+            set(k, geocentricLatitude.applyAsDouble(pt), pt.lonRad());
+        });
+    }
+
+    /**
+     * @param latDeg широты точек в градусах
+     * @param lonDeg долготы точек в градусах
+     * @param ell    эллипсоид
+     * @throws IllegalArgumentException если длины массивов различаются
+     */
+    public UnitVectors(@NotNull final double[] latDeg, @NotNull final double[] lonDeg,
+                       @NotNull final Ellipsoid ell) {
+        final int n = latDeg.length;
+        if (lonDeg.length != n) {
+            throw new IllegalArgumentException("arrays length is not valid");
+        }
+        x = new double[n];
+        y = new double[n];
+        z = new double[n];
+        final GeocentricLatitude geocentricLatitude = new GeocentricLatitude(ell);
+        range(n).forEach(k -> set(k,
+                geocentricLatitude.value(FastMath.toRadians(latDeg[k])),
+                FastMath.toRadians(lonDeg[k])));
+    }
+
+    @NotNull
+    private static IntStream range(final int n) {
+        final IntStream s = IntStream.range(0, n);
+        return n < PARALLEL_THRESHOLD ? s : s.parallel();
+    }
+
+    private void set(final int k, final double phi, final double lon) {
+        final double c = FastMath.cos(phi);
+        x[k] = c * FastMath.cos(lon);
+        y[k] = c * FastMath.sin(lon);
+        z[k] = FastMath.sin(phi);
+    }
+
+    /**
+     * @return число точек
+     */
+    public int size() {
+        return x.length;
+    }
+
+    double x(final int k) {
+        return x[k];
+    }
+
+    double y(final int k) {
+        return y[k];
+    }
+
+    double z(final int k) {
+        return z[k];
+    }
+
+    /**
+     * Сферическое расстояние между точками набора.
+     *
+     * @param i номер первой точки
+     * @param j номер второй точки
+     * @return расстояние в градусах
+     */
+    public double distance(final int i, final int j) {
+        final double dx = x[i] - x[j], dy = y[i] - y[j], dz = z[i] - z[j];
+        return angle(dx * dx + dy * dy + dz * dz);
+    }
+
+    /**
+     * Расстояния от точки {@code i} до точек {@code from..to-1} набора.
+     *
+     * @param i    номер точки
+     * @param from номер первой точки, включительно
+     * @param to   номер последней точки, исключительно
+     * @param out  массив расстояний в градусах, не короче {@code to - from};
+     *             расстояние до точки {@code j} записывается в {@code out[j - from]}
+     */
+    public void row(final int i, final int from, final int to, @NotNull final double[] out) {
+        final double xi = x[i], yi = y[i], zi = z[i];
+        final int n = to - from;
+        for (int k = 0; k < n; k++) {
+            final double dx = xi - x[from + k], dy = yi - y[from + k], dz = zi - z[from + k];
+            out[k] = dx * dx + dy * dy + dz * dz;
+        }
+        angles(out, n);
+    }
+
+    /**
+     * Расстояния от точки {@code i} набора {@code other} до всех точек
+     * этого набора.
+     *
+     * @param other набор, которому принадлежит точка
+     * @param i     номер точки в наборе {@code other}
+     * @param out   массив расстояний в градусах, не короче {@link #size()}
+     */
+    public void row(@NotNull final UnitVectors other, final int i, @NotNull final double[] out) {
+        final double xi = other.x[i], yi = other.y[i], zi = other.z[i];
+        final int n = x.length;
+        for (int k = 0; k < n; k++) {
+            final double dx = xi - x[k], dy = yi - y[k], dz = zi - z[k];
+            out[k] = dx * dx + dy * dy + dz * dz;
+        }
+        angles(out, n);
+    }
+
+    /**
+     * Замена квадратов хорд углами в градусах.
+     */
+    private static void angles(@NotNull final double[] c2, final int n) {
+        for (int k = 0; k < n; k++) {
+            c2[k] = angle(c2[k]);
+        }
+    }
+
+    /**
+     * Угол в градусах по квадрату хорды единичной сферы.
+     */
+    static double angle(final double c2) {
+        if (c2 <= 1.0) {
+            return FastMath.toDegrees(2 * FastMath.asin(FastMath.sqrt(c2) / 2));
+        }
+        return FastMath.toDegrees(FastMath.acos(FastMath.max(-1.0, 1 - c2 / 2)));
+    }
+}
@@ -0,0 +1,36 @@
+package by.geo.point;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Хранилище значений грида в двухмерном массиве.
+ */
+final class ArrayGridStorage implements GridStorage {
+
+    @NotNull
+    private final double[][] vals;
+
+    ArrayGridStorage(final int rowNumber, final int colNumber) {
+        vals = new double[rowNumber][colNumber];
+    }
+
+    @Override
+    public double get(final int i, final int j) {
+        return vals[i][j];
+    }
+
+    @Override
+    public void set(final int i, final int j, final double value) {
+        vals[i][j] = value;
+    }
+
+    @Override
+    public void getRow(final int i, final int j, final double[] dst, final int off, final int len) {
+        System.arraycopy(vals[i], j, dst, off, len);
+    }
+
+    @Override
+    public void setRow(final int i, final int j, final double[] src, final int off, final int len) {
+        System.arraycopy(src, off, vals[i], j, len);
+    }
+}
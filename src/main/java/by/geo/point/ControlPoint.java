@@ -68,6 +68,13 @@ public final class ControlPoint extends GeodeticPoint implements Dzetta {
         return result;
     }
 
+    /**
+     * Ошибка измерения высоты: нулевая ошибка заменяется на 1 мм.
+     */
+    static double heightError(final double error) {
+        return error == 0.0 ? 0.001 : error;
+    }
+
     /**
      * Строитель контрольной точки
      */
@@ -87,8 +94,8 @@ public final class ControlPoint extends GeodeticPoint implements Dzetta {
 
         public ControlPoint build() {
             return new ControlPoint(latDeg, lonDeg,
-                    new Observation(normal, normalError == 0.0 ? 0.001 : normalError),
-                    new Observation(geodetic, geodeticError == 0.0 ? 0.001 : geodeticError),
+                    new Observation(normal, heightError(normalError)),
+                    new Observation(geodetic, heightError(geodeticError)),
                     interpolator);
         }
 
@@ -0,0 +1,197 @@
+package by.geo.point;
+
+import by.geo.math.GeodeticToDoubleFunction;
+import org.apache.commons.math3.util.FastMath;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Набор контрольных точек в виде столбцов.
+ *
+ * <p>Координаты, высоты и их ошибки хранятся в массивах примитивов,
+ * точка задается номером. Нулевая ошибка высоты, как и в
+ * {@link ControlPoint.Builder}, заменяется на 1 мм.</p>
+ */
+public final class ControlPointSet {
+
+    @NotNull
+    private final double[] lat, lon, normal, geodetic, normalError, geodeticError;
+
+    /**
+     * Набор поверх массивов; массивы не копируются.
+     *
+     * @param lat           широты в градусах
+     * @param lon           долготы в градусах
+     * @param normal        нормальные высоты
+     * @param geodetic      геодезические высоты
+     * @param normalError   ошибки нормальных высот
+     * @param geodeticError ошибки геодезических высот
+     * @throws IllegalArgumentException если длины массивов различаются
+     */
+    public ControlPointSet(@NotNull final double[] lat, @NotNull final double[] lon,
+                           @NotNull final double[] normal, @NotNull final double[] geodetic,
+                           @NotNull final double[] normalError,
+                           @NotNull final double[] geodeticError) {
+        final int n = lat.length;
+        if (lon.length != n || normal.length != n || geodetic.length != n
+                || normalError.length != n || geodeticError.length != n) {
+            throw new IllegalArgumentException("arrays length is not valid");
+        }
+        this.lat = lat;
+        this.lon = lon;
+        this.normal = normal;
+        this.geodetic = geodetic;
+        this.normalError = normalError;
+        this.geodeticError = geodeticError;
+    }
+
+    /**
+     * @return число точек
+     */
+    public int size() {
+        return lat.length;
+    }
+
+    /**
+     * @return широта точки в градусах
+     */
+    public double latDeg(final int k) {
+        return lat[k];
+    }
+
+    /**
+     * @return долгота точки в градусах
+     */
+    public double lonDeg(final int k) {
+        return lon[k];
+    }
+
+    /**
+     * @return нормальная высота точки
+     */
+    public double normalHeight(final int k) {
+        return normal[k];
+    }
+
+    /**
+     * @return геодезическая высота точки
+     */
+    public double geodeticHeight(final int k) {
+        return geodetic[k];
+    }
+
+    /**
+     * @return ошибка нормальной высоты точки
+     */
+    public double normalHeightError(final int k) {
+        return ControlPoint.heightError(normalError[k]);
+    }
+
+    /**
+     * @return ошибка геодезической высоты точки
+     */
+    public double geodeticHeightError(final int k) {
+        return ControlPoint.heightError(geodeticError[k]);
+    }
+
+    /**
+     * @return геометрическая аномалия высоты {@code h - H}
+     */
+    public double geometric(final int k) {
+        return geodetic[k] - normal[k];
+    }
+
+    /**
+     * @return ошибка геометрической аномалии высоты
+     */
+    public double geometricError(final int k) {
+        return FastMath.hypot(geodeticHeightError(k), normalHeightError(k));
+    }
+
+    /**
+     * Найти повторы: точки, лежащие в пределах допуска от точки
+     * с меньшим номером.
+     *
+     * <p>Поиск выполняется по пространственному хешу за время,
+     * линейное по числу точек.</p>
+     *
+     * @param tolerance допуск в метрах
+     * @return номера повторов по возрастанию
+     * @throws IllegalArgumentException если допуск не положителен
+     */
+    @NotNull
+    public int[] duplicates(final double tolerance) {
+        if (!(tolerance > 0)) {
+            throw new IllegalArgumentException("tolerance is not valid");
+        }
+        final int n = size();
+        final PointHash hash = new PointHash(lat, lon, n, tolerance);
+        int[] dup = new int[16];
+        int count = 0;
+        for (int k = 0; k < n; k++) {
+            if (hash.find(k) >= 0) {
+                if (count == dup.length) {
+                    dup = Arrays.copyOf(dup, count * 2);
+                }
+                dup[count++] = k;
+            } else {
+                hash.add(k);
+            }
+        }
+        return Arrays.copyOf(dup, count);
+    }
+
+    /**
+     * Набор без указанных точек.
+     *
+     * @param excluded номера исключаемых точек по возрастанию
+     * @return новый набор
+     */
+    @NotNull
+    public ControlPointSet without(@NotNull final int[] excluded) {
+        if (excluded.length == 0) {
+            return this;
+        }
+        final int n = size() - excluded.length;
+        final double[][] cols = new double[6][n];
+        int e = 0, p = 0;
+        for (int k = 0; k < size(); k++) {
+            if (e < excluded.length && excluded[e] == k) {
+                e++;
+                continue;
+            }
+            cols[0][p] = lat[k];
+            cols[1][p] = lon[k];
+            cols[2][p] = normal[k];
+            cols[3][p] = geodetic[k];
+            cols[4][p] = normalError[k];
+            cols[5][p] = geodeticError[k];
+            p++;
+        }
+        return new ControlPointSet(cols[0], cols[1], cols[2], cols[3], cols[4], cols[5]);
+    }
+
+    /**
+     * Список контрольных точек набора.
+     *
+     * @param interpolator функция модельных значений
+     * @return список точек в порядке номеров
+     */
+    @NotNull
+    public List<ControlPoint> points(@NotNull final GeodeticToDoubleFunction interpolator) {
+        final List<ControlPoint> list = new ArrayList<>(size());
+        for (int k = 0; k < size(); k++) {
+            list.add(new ControlPoint.Builder(lat[k], lon[k], interpolator)
+                    .setNormalHeight(normal[k])
+                    .setGeodeticHeight(geodetic[k])
+                    .setNormalHeightError(normalError[k])
+                    .setGeodeticHeightError(geodeticError[k])
+                    .build());
+        }
+        return Collections.unmodifiableList(list);
+    }
+}
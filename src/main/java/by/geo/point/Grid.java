@@ -2,9 +2,15 @@ package by.geo.point;
 
 import org.jetbrains.annotations.NotNull;
 
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
+
 /**
- * Грид (регулярная сетка двухмерных точек)
- * на основе двухмерного массива значений.
+ * Грид (регулярная сетка двухмерных точек).
+ *
+ * <p>Значения узлов хранятся в {@link GridStorage}: по умолчанию
+ * в двухмерном массиве, либо во внешнем хранилище
+ * (например, в кеше тайлов файла на диске).</p>
  */
 public final class Grid {
 
@@ -36,10 +42,10 @@ public final class Grid {
     private final int rowNumber;
 
     /**
-     * Двухмерный массив значений.
+     * Хранилище значений.
      */
     @NotNull
-    private final double[][] vals;
+    private final GridStorage vals;
 
     /**
      * Конструктор грида.
@@ -54,6 +60,25 @@ public final class Grid {
      */
     Grid(final double lat0, final double lon0, final double lat,
          final double lon, final double dlat, final double dlon) {
+        this(lat0, lon0, lat, lon, dlat, dlon, null);
+    }
+
+    /**
+     * Конструктор грида с внешним хранилищем значений.
+     *
+     * @param lat0    минимальная широта
+     * @param lon0    минимальная долгота
+     * @param lat     максимальная широта
+     * @param lon     максимальная долгота
+     * @param dlat    шаг по широте
+     * @param dlon    шаг по долготе
+     * @param storage хранилище значений
+     *                или {@code null} для хранения в памяти
+     * @throws IllegalArgumentException если {@code (lat < lat0 || lon < lon0)}
+     */
+    Grid(final double lat0, final double lon0, final double lat,
+         final double lon, final double dlat, final double dlon,
+         final GridStorage storage) {
         if (lat < lat0 || lon < lon0) {
             throw new IllegalArgumentException("lat < lat0 || lon < lon0");
         }
@@ -64,10 +89,44 @@ public final class Grid {
         this.dlat = dlat;
         this.dlon = dlon;
 
-        rowNumber = (int) ((lat - lat0 + dlat / 2) / dlat + 1);
-        colNumber = (int) ((lon - lon0 + dlat / 2) / dlon + 1);
+        rowNumber = rowNumber(lat0, lat, dlat);
+        colNumber = colNumber(lon0, lon, dlat, dlon);
+
+        vals = storage != null ? storage
+                : new ArrayGridStorage(rowNumber, colNumber);
+    }
+
+    /**
+     * Конструктор грида с заданным числом строк и столбцов.
+     */
+    private Grid(final double lat0, final double lon0,
+                 final double dlat, final double dlon,
+                 final int rowNumber, final int colNumber,
+                 @NotNull final GridStorage storage) {
+        this.lat0 = lat0;
+        this.lon0 = lon0;
+        this.lat = lat0 + dlat * (rowNumber - 1);
+        this.lon = lon0 + dlon * (colNumber - 1);
+        this.dlat = dlat;
+        this.dlon = dlon;
+        this.rowNumber = rowNumber;
+        this.colNumber = colNumber;
+        vals = storage;
+    }
+
+    /**
+     * Число строк грида по границам и шагу.
+     */
+    static int rowNumber(final double lat0, final double lat, final double dlat) {
+        return (int) ((lat - lat0 + dlat / 2) / dlat + 1);
+    }
 
-        vals = new double[rowNumber][colNumber];
+    /**
+     * Число столбцов грида по границам и шагу.
+     */
+    static int colNumber(final double lon0, final double lon,
+                         final double dlat, final double dlon) {
+        return (int) ((lon - lon0 + dlat / 2) / dlon + 1);
     }
 
     /**
@@ -126,6 +185,37 @@ public final class Grid {
         return dlon;
     }
 
+    /**
+     * @param i номер строки
+     * @return широта строки в градусах
+     */
+    public double latDeg(final int i) {
+        return lat0 + dlat * i;
+    }
+
+    /**
+     * @param j номер столбца
+     * @return долгота столбца в градусах
+     */
+    public double lonDeg(final int j) {
+        return lon0 + dlon * j;
+    }
+
+    /**
+     * Поток линейных номеров узлов {@code k = i * colNumber + j}
+     * по строкам.
+     *
+     * <p>Узлы не материализуются; параллельный поток делится
+     * по границам строк. Координаты узла получаются из номера через
+     * {@link #latDeg(int)}, {@link #lonDeg(int)} или {@link GridCursor}.</p>
+     *
+     * @return поток номеров узлов
+     */
+    @NotNull
+    public LongStream nodes() {
+        return StreamSupport.longStream(new GridSpliterator(rowNumber, colNumber), false);
+    }
+
     /**
      * @param pt геодезические координаты
      * @return {@code true}
@@ -141,7 +231,7 @@ public final class Grid {
     private void testIJ(final int i, final int j) {
         if (i < 0 || i >= rowNumber)
             throw new IllegalArgumentException("i is not valid");
-        if (j < 0 || j > colNumber)
+        if (j < 0 || j >= colNumber)
             throw new IllegalArgumentException("j is not valid");
     }
 
@@ -152,11 +242,12 @@ public final class Grid {
      * @param j     номер столбца
      * @param value значение
      * @throws IllegalArgumentException если
-     *                                  {@code (i < 0 || i >= rowNumber || j < 0 || j > colNumber)}
+     *                                  {@code (i < 0 || i >= rowNumber || j < 0 || j >= colNumber)}
+     * @throws UnsupportedOperationException если хранилище только для чтения
      */
     public void setValue(final int i, final int j, final double value) {
         testIJ(i, j);
-        vals[i][j] = value;
+        vals.set(i, j, value);
     }
 
     /**
@@ -166,10 +257,74 @@ public final class Grid {
      * @param j номер столбца
      * @return значение из узла грида
      * @throws IllegalArgumentException если
-     *                                  {@code (i < 0 || i >= rowNumber || j < 0 || j > colNumber)}
+     *                                  {@code (i < 0 || i >= rowNumber || j < 0 || j >= colNumber)}
      */
     public double getValue(final int i, final int j) {
         testIJ(i, j);
-        return vals[i][j];
+        return vals.get(i, j);
+    }
+
+    /**
+     * Прочитать строку грида.
+     *
+     * @param i   номер строки
+     * @param dst массив длиной не менее {@code colNumber}
+     * @throws IllegalArgumentException если {@code (i < 0 || i >= rowNumber)}
+     *                                  или массив короче строки
+     */
+    public void getRow(final int i, @NotNull final double[] dst) {
+        testRow(i, dst);
+        vals.getRow(i, 0, dst, 0, colNumber);
+    }
+
+    /**
+     * Записать строку грида.
+     *
+     * @param i   номер строки
+     * @param src массив длиной не менее {@code colNumber}
+     * @throws IllegalArgumentException      если {@code (i < 0 || i >= rowNumber)}
+     *                                       или массив короче строки
+     * @throws UnsupportedOperationException если хранилище только для чтения
+     */
+    public void setRow(final int i, @NotNull final double[] src) {
+        testRow(i, src);
+        vals.setRow(i, 0, src, 0, colNumber);
+    }
+
+    private void testRow(final int i, @NotNull final double[] row) {
+        if (i < 0 || i >= rowNumber)
+            throw new IllegalArgumentException("i is not valid");
+        if (row.length < colNumber)
+            throw new IllegalArgumentException("row is too short");
+    }
+
+    /**
+     * Окно грида: прямоугольная область, разделяющая хранилище
+     * значений с исходным гридом.
+     *
+     * <p>Узел {@code (i, j)} окна соответствует узлу
+     * {@code (iMin + i, jMin + j)} исходного грида; изменения значений
+     * видны в обоих гридах. Окна, не пересекающиеся по узлам,
+     * можно обрабатывать параллельно.</p>
+     *
+     * @param iMin первая строка окна
+     * @param jMin первый столбец окна
+     * @param iMax строка, следующая за последней строкой окна
+     * @param jMax столбец, следующий за последним столбцом окна
+     * @return окно грида
+     * @throws IllegalArgumentException если
+     *                                  {@code (iMin < 0 || iMax > rowNumber || iMin >= iMax
+     *                                  || jMin < 0 || jMax > colNumber || jMin >= jMax)}
+     */
+    @NotNull
+    public Grid window(final int iMin, final int jMin, final int iMax, final int jMax) {
+        if (iMin < 0 || iMax > rowNumber || iMin >= iMax)
+            throw new IllegalArgumentException("i range is not valid");
+        if (jMin < 0 || jMax > colNumber || jMin >= jMax)
+            throw new IllegalArgumentException("j range is not valid");
+
+        return new Grid(lat0 + dlat * iMin, lon0 + dlon * jMin, dlat, dlon,
+                iMax - iMin, jMax - jMin,
+                WindowGridStorage.of(vals, iMin, jMin, iMax - iMin, jMax - jMin));
     }
 }
@@ -56,4 +56,26 @@ public class GridBuilder {
     public Grid build() {
         return new Grid(lat0, lon0, lat, lon, dlat, dlon);
     }
+
+    /**
+     * Построить грид поверх внешнего хранилища значений.
+     *
+     * @param storage хранилище значений
+     * @return грид
+     */
+    @NotNull
+    public Grid build(@NotNull final GridStorage storage) {
+        return new Grid(lat0, lon0, lat, lon, dlat, dlon, storage);
+    }
+
+    /**
+     * Построить многослойный грид.
+     *
+     * @param layers число слоев
+     * @return многослойный грид
+     */
+    @NotNull
+    public LayeredGrid buildLayered(final int layers) {
+        return new LayeredGrid(lat0, lon0, lat, lon, dlat, dlon, layers);
+    }
 }
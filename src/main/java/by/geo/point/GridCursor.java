@@ -0,0 +1,69 @@
+package by.geo.point;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Изменяемый указатель на узел грида.
+ *
+ * <p>Позволяет передать узел в функции от {@link Geodetic},
+ * не создавая объект на каждый узел. Не потокобезопасен:
+ * каждому потоку нужен свой указатель.</p>
+ */
+public final class GridCursor implements Geodetic {
+
+    @NotNull
+    private final Grid grid;
+    private int i, j;
+
+    /**
+     * @param grid грид
+     */
+    public GridCursor(@NotNull final Grid grid) {
+        this.grid = grid;
+    }
+
+    /**
+     * Перейти к узлу по линейному номеру {@code k = i * colNumber + j}.
+     *
+     * @param k линейный номер узла
+     * @return этот указатель
+     */
+    @NotNull
+    public GridCursor moveTo(final long k) {
+        i = (int) (k / grid.colNumber());
+        j = (int) (k - (long) i * grid.colNumber());
+        return this;
+    }
+
+    /**
+     * Перейти к узлу.
+     *
+     * @param i номер строки
+     * @param j номер столбца
+     * @return этот указатель
+     */
+    @NotNull
+    public GridCursor moveTo(final int i, final int j) {
+        this.i = i;
+        this.j = j;
+        return this;
+    }
+
+    @Override
+    public double latDeg() {
+        return grid.latDeg(i);
+    }
+
+    @Override
+    public double lonDeg() {
+        return grid.lonDeg(j);
+    }
+
+    public int getI() {
+        return i;
+    }
+
+    public int getJ() {
+        return j;
+    }
+}
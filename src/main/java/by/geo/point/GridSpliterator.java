@@ -0,0 +1,78 @@
+package by.geo.point;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Spliterator;
+import java.util.function.LongConsumer;
+
+/**
+ * Разделитель линейных номеров узлов грида {@code k = i * colNumber + j}.
+ *
+ * <p>Номера длинные, так что грид может иметь больше
+ * {@code 2^31} узлов. Делится по границам строк, поэтому каждая часть параллельного
+ * потока обходит целые строки подряд.</p>
+ */
+final class GridSpliterator implements Spliterator.OfLong {
+
+    private final int cols;
+    private final int endRow;
+    private int row, col;
+
+    GridSpliterator(final int rowNumber, final int colNumber) {
+        this(0, 0, rowNumber, colNumber);
+    }
+
+    private GridSpliterator(final int row, final int col, final int endRow, final int cols) {
+        this.row = row;
+        this.col = col;
+        this.endRow = endRow;
+        this.cols = cols;
+    }
+
+    @Override
+    public boolean tryAdvance(@NotNull final LongConsumer action) {
+        if (row >= endRow) {
+            return false;
+        }
+        action.accept((long) row * cols + col);
+        if (++col == cols) {
+            col = 0;
+            row++;
+        }
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(@NotNull final LongConsumer action) {
+        for (; row < endRow; row++, col = 0) {
+            final long base = (long) row * cols;
+            for (; col < cols; col++) {
+                action.accept(base + col);
+            }
+        }
+    }
+
+    @Override
+    public OfLong trySplit() {
+        final int lo = col == 0 ? row : row + 1;
+        final int rows = endRow - lo;
+        if (rows < 2) {
+            return null;
+        }
+        final int mid = lo + rows / 2;
+        final GridSpliterator prefix = new GridSpliterator(row, col, mid, cols);
+        row = mid;
+        col = 0;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return (long) (endRow - row) * cols - col;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | SIZED | SUBSIZED | DISTINCT | NONNULL | IMMUTABLE;
+    }
+}
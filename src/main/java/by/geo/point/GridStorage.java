@@ -0,0 +1,65 @@
+package by.geo.point;
+
+/**
+ * Хранилище значений узлов грида.
+ *
+ * <p>Грид проверяет индексы до обращения к хранилищу, поэтому
+ * реализации не обязаны проверять границы. Реализация может проверять
+ * их сама и бросать {@link IllegalArgumentException}; так делает окно
+ * грида, смещающее индексы в общее хранилище, чтобы обращение
+ * не попало в соседнее окно.</p>
+ */
+public interface GridStorage {
+
+    /**
+     * Получить значение узла.
+     *
+     * @param i номер строки
+     * @param j номер столбца
+     * @return значение узла
+     */
+    double get(final int i, final int j);
+
+    /**
+     * Задать значение узла.
+     *
+     * @param i     номер строки
+     * @param j     номер столбца
+     * @param value значение
+     * @throws UnsupportedOperationException если хранилище только для чтения
+     */
+    void set(final int i, final int j, final double value);
+
+
+    /**
+     * Прочитать отрезок строки.
+     *
+     * @param i   номер строки
+     * @param j   первый столбец
+     * @param dst массив для значений
+     * @param off позиция в массиве
+     * @param len число значений
+     */
+    default void getRow(final int i, final int j, final double[] dst, final int off, final int len) {
+        for (int n = 0; n < len; n++) {
+            dst[off + n] = get(i, j + n);
+        }
+    }
+
+    /**
+     * Записать отрезок строки.
+     *
+     * @param i   номер строки
+     * @param j   первый столбец
+     * @param src массив значений
+     * @param off позиция в массиве
+     * @param len число значений
+     * @throws UnsupportedOperationException если хранилище только для чтения
+     */
+    default void setRow(final int i, final int j, final double[] src, final int off, final int len) {
+        for (int n = 0; n < len; n++) {
+            set(i, j + n, src[off + n]);
+        }
+    }
+
+}
@@ -0,0 +1,169 @@
+package by.geo.point;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Многослойный грид: несколько величин на одной регулярной сетке
+ * (например, модельные высоты, их ошибки, сигнал и ошибка прогноза).
+ *
+ * <p>Значения слоев хранятся подряд для каждого узла, поэтому
+ * все слои узла читаются за одно обращение к памяти. Каждый слой
+ * доступен как обычный {@link Grid}, разделяющий хранилище
+ * с многослойным гридом.</p>
+ */
+public final class LayeredGrid {
+
+    private final int rowNumber, colNumber, layers;
+
+    /**
+     * Значения по строкам: {@code vals[i][j * layers + k]}.
+     */
+    @NotNull
+    private final double[][] vals;
+
+    @NotNull
+    private final Grid[] views;
+
+    /**
+     * Конструктор многослойного грида.
+     *
+     * @param lat0   минимальная широта
+     * @param lon0   минимальная долгота
+     * @param lat    максимальная широта
+     * @param lon    максимальная долгота
+     * @param dlat   шаг по широте
+     * @param dlon   шаг по долготе
+     * @param layers число слоев
+     * @throws IllegalArgumentException если {@code (lat < lat0 || lon < lon0 || layers < 1)}
+     */
+    LayeredGrid(final double lat0, final double lon0, final double lat,
+                final double lon, final double dlat, final double dlon,
+                final int layers) {
+        if (layers < 1) {
+            throw new IllegalArgumentException("layers is not valid");
+        }
+        if (lat < lat0 || lon < lon0) {
+            throw new IllegalArgumentException("lat < lat0 || lon < lon0");
+        }
+        this.layers = layers;
+        rowNumber = Grid.rowNumber(lat0, lat, dlat);
+        colNumber = Grid.colNumber(lon0, lon, dlat, dlon);
+
+        vals = new double[rowNumber][colNumber * layers];
+
+        views = new Grid[layers];
+        for (int k = 0; k < layers; k++) {
+            views[k] = new Grid(lat0, lon0, lat, lon, dlat, dlon, new LayerStorage(k));
+        }
+    }
+
+    /**
+     * @return число слоев
+     */
+    public int layers() {
+        return layers;
+    }
+
+    /**
+     * Слой как грид, разделяющий хранилище с многослойным гридом.
+     *
+     * @param k номер слоя
+     * @return грид слоя
+     * @throws IllegalArgumentException если {@code (k < 0 || k >= layers)}
+     */
+    @NotNull
+    public Grid layer(final int k) {
+        if (k < 0 || k >= layers)
+            throw new IllegalArgumentException("k is not valid");
+        return views[k];
+    }
+
+    /**
+     * @return число столбцов данных грида
+     */
+    public int colNumber() {
+        return colNumber;
+    }
+
+    /**
+     * @return число рядов данных грида
+     */
+    public int rowNumber() {
+        return rowNumber;
+    }
+
+    /**
+     * Получить значения всех слоев узла.
+     *
+     * @param i   номер строки
+     * @param j   номер столбца
+     * @param dst массив длиной не менее {@code layers}
+     * @throws IllegalArgumentException если индексы вне грида
+     */
+    public void getValues(final int i, final int j, @NotNull final double[] dst) {
+        testIJ(i, j);
+        System.arraycopy(vals[i], j * layers, dst, 0, layers);
+    }
+
+    /**
+     * Задать значения всех слоев узла.
+     *
+     * @param i   номер строки
+     * @param j   номер столбца
+     * @param src массив длиной не менее {@code layers}
+     * @throws IllegalArgumentException если индексы вне грида
+     */
+    public void setValues(final int i, final int j, @NotNull final double[] src) {
+        testIJ(i, j);
+        System.arraycopy(src, 0, vals[i], j * layers, layers);
+    }
+
+    /**
+     * Прибавить взвешенные значения всех слоев узла:
+     * {@code acc[k] += w * value(i, j, k)}.
+     *
+     * <p>Используется интерполяторами для накопления всех слоев
+     * за один проход по узлам шаблона; индексы не проверяются.</p>
+     *
+     * @param i   номер строки
+     * @param j   номер столбца
+     * @param w   вес узла
+     * @param acc накопитель длиной не менее {@code layers}
+     */
+    public void accumulate(final int i, final int j, final double w,
+                           @NotNull final double[] acc) {
+        final double[] row = vals[i];
+        final int base = j * layers;
+        for (int k = 0; k < layers; k++) {
+            acc[k] += w * row[base + k];
+        }
+    }
+
+    private void testIJ(final int i, final int j) {
+        if (i < 0 || i >= rowNumber)
+            throw new IllegalArgumentException("i is not valid");
+        if (j < 0 || j >= colNumber)
+            throw new IllegalArgumentException("j is not valid");
+    }
+
+    /**
+     * Хранилище одного слоя.
+     */
+    private final class LayerStorage implements GridStorage {
+        private final int k;
+
+        LayerStorage(final int k) {
+            this.k = k;
+        }
+
+        @Override
+        public double get(final int i, final int j) {
+            return vals[i][j * layers + k];
+        }
+
+        @Override
+        public void set(final int i, final int j, final double value) {
+            vals[i][j * layers + k] = value;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package by.geo.point;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * Пространственный хеш точек на сфере.
+ *
+ * <p>Точки переводятся в прямоугольные координаты на сфере среднего
+ * радиуса Земли и раскладываются по кубическим ячейкам со стороной,
+ * равной допуску. Ближние точки ищутся в 27 соседних ячейках.
+ * Таблица - открытая адресация на массиве номеров точек,
+ * без создания объектов на точку.</p>
+ */
+final class PointHash {
+
+    /**
+     * Средний радиус Земли в метрах.
+     */
+    static final double RADIUS = 6371000.0;
+
+    private final double tolerance;
+    @NotNull
+    private final double[] x, y, z;
+    @NotNull
+    private final int[] table;
+    private final int mask;
+
+    /**
+     * @param lat       широты точек в градусах
+     * @param lon       долготы точек в градусах
+     * @param size      число точек
+     * @param tolerance допуск в метрах
+     */
+    PointHash(@NotNull final double[] lat, @NotNull final double[] lon, final int size,
+              final double tolerance) {
+        this.tolerance = tolerance;
+        x = new double[size];
+        y = new double[size];
+        z = new double[size];
+        for (int k = 0; k < size; k++) {
+            final double B = Math.toRadians(lat[k]);
+            final double L = Math.toRadians(lon[k]);
+            x[k] = RADIUS * Math.cos(B) * Math.cos(L);
+            y[k] = RADIUS * Math.cos(B) * Math.sin(L);
+            z[k] = RADIUS * Math.sin(B);
+        }
+        int capacity = 16;
+        while (capacity < 2 * size) {
+            capacity <<= 1;
+        }
+        table = new int[capacity];
+        Arrays.fill(table, -1);
+        mask = capacity - 1;
+    }
+
+    /**
+     * Найти ранее добавленную точку в пределах допуска.
+     *
+     * @param k номер точки
+     * @return номер найденной точки или -1
+     */
+    int find(final int k) {
+        final long cx = cell(x[k]), cy = cell(y[k]), cz = cell(z[k]);
+        final double t2 = tolerance * tolerance;
+        for (long dx = -1; dx <= 1; dx++) {
+            for (long dy = -1; dy <= 1; dy++) {
+                for (long dz = -1; dz <= 1; dz++) {
+                    final long ax = cx + dx, ay = cy + dy, az = cz + dz;
+                    for (int s = hash(ax, ay, az); table[s] >= 0; s = (s + 1) & mask) {
+                        final int q = table[s];
+                        if (cell(x[q]) != ax || cell(y[q]) != ay || cell(z[q]) != az) continue;
+                        final double ex = x[q] - x[k], ey = y[q] - y[k], ez = z[q] - z[k];
+                        if (ex * ex + ey * ey + ez * ez <= t2) {
+                            return q;
+                        }
+                    }
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Добавить точку.
+     *
+     * @param k номер точки
+     */
+    void add(final int k) {
+        int s = hash(cell(x[k]), cell(y[k]), cell(z[k]));
+        while (table[s] >= 0) {
+            s = (s + 1) & mask;
+        }
+        table[s] = k;
+    }
+
+    private long cell(final double c) {
+        return (long) Math.floor(c / tolerance);
+    }
+
+    private int hash(final long cx, final long cy, final long cz) {
+        long h = cx * 0x9E3779B97F4A7C15L + cy * 0xC2B2AE3D27D4EB4FL + cz * 0x165667B19E3779F9L;
+        h ^= h >>> 29;
+        return (int) h & mask;
+    }
+}
@@ -0,0 +1,180 @@
+package by.geo.point;
+
+import by.geo.math.GeodeticToDoubleFunction;
+import org.apache.commons.math3.util.FastMath;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Набор остаточных сигналов контрольных точек.
+ *
+ * <p>Модельные значения, сигналы (геометрическая аномалия высоты
+ * минус модельная) и их ошибки вычисляются один раз при создании
+ * набора и хранятся в массивах; точка задается номером. Так
+ * интерполяция модели не повторяется в циклах по парам точек.</p>
+ */
+public final class SignalSet {
+
+    @NotNull
+    private final double[] lat, lon, model, signal, error;
+    @NotNull
+    private final List<Geodetic> points;
+
+    private SignalSet(@NotNull final double[] lat, @NotNull final double[] lon,
+                      @NotNull final double[] model, @NotNull final double[] signal,
+                      @NotNull final double[] error) {
+        this.lat = lat;
+        this.lon = lon;
+        this.model = model;
+        this.signal = signal;
+        this.error = error;
+
+        final List<Geodetic> list = new ArrayList<>(lat.length);
+        for (int k = 0; k < lat.length; k++) {
+            list.add(new GeodeticPoint(lat[k], lon[k]));
+        }
+        points = Collections.unmodifiableList(list);
+    }
+
+    /**
+     * Набор сигналов точек.
+     *
+     * <p>Модельное значение каждой точки запрашивается один раз.</p>
+     *
+     * @param points точки
+     * @param <T>    тип точек
+     * @return набор сигналов в порядке обхода коллекции
+     */
+    @NotNull
+    public static <T extends Geodetic & Dzetta> SignalSet of(@NotNull final Collection<T> points) {
+        final List<T> list = new ArrayList<>(points);
+        final int n = list.size();
+        final double[] lat = new double[n], lon = new double[n], model = new double[n],
+                signal = new double[n], error = new double[n];
+
+        IntStream.range(0, n).parallel().forEach(k -> {
+            final T p = list.get(k);
+            final Observation g = p.geometric();
+            final Observation m = p.model();
+            lat[k] = p.latDeg();
+            lon[k] = p.lonDeg();
+            model[k] = m.value();
+            signal[k] = g.value() - m.value();
+            error[k] = FastMath.hypot(g.error(), m.error());
+        });
+        return new SignalSet(lat, lon, model, signal, error);
+    }
+
+    /**
+     * Набор сигналов точек набора с пакетным расчетом модельных значений.
+     * Интерполятор ошибок модели не дает, поэтому ошибка сигнала -
+     * ошибка геометрической высоты.
+     *
+     * @param points       контрольные точки
+     * @param interpolator функция модельных значений
+     * @return набор сигналов в порядке номеров точек
+     */
+    @NotNull
+    public static SignalSet of(@NotNull final ControlPointSet points,
+                               @NotNull final GeodeticToDoubleFunction interpolator) {
+        final int n = points.size();
+        final double[] lat = new double[n], lon = new double[n], model = new double[n],
+                signal = new double[n], error = new double[n];
+        for (int k = 0; k < n; k++) {
+            lat[k] = points.latDeg(k);
+            lon[k] = points.lonDeg(k);
+        }
+        interpolator.applyAsDouble(lat, lon, model);
+        for (int k = 0; k < n; k++) {
+            signal[k] = points.geometric(k) - model[k];
+            error[k] = points.geometricError(k);
+        }
+        return new SignalSet(lat, lon, model, signal, error);
+    }
+
+    /**
+     * Набор поверх готовых массивов, например прочитанных из файла;
+     * массивы не копируются.
+     *
+     * @param lat    широты в градусах
+     * @param lon    долготы в градусах
+     * @param model  модельные аномалии высоты
+     * @param signal остаточные сигналы
+     * @param error  ошибки сигналов
+     * @return набор сигналов
+     * @throws IllegalArgumentException если длины массивов различаются
+     */
+    @NotNull
+    public static SignalSet of(@NotNull final double[] lat, @NotNull final double[] lon,
+                               @NotNull final double[] model, @NotNull final double[] signal,
+                               @NotNull final double[] error) {
+        final int n = lat.length;
+        if (lon.length != n || model.length != n || signal.length != n || error.length != n) {
+            throw new IllegalArgumentException("arrays length is not valid");
+        }
+        return new SignalSet(lat, lon, model, signal, error);
+    }
+
+    /**
+     * @return число точек
+     */
+    public int size() {
+        return signal.length;
+    }
+
+    /**
+     * @return широта точки в градусах
+     */
+    public double latDeg(final int k) {
+        return lat[k];
+    }
+
+    /**
+     * @return долгота точки в градусах
+     */
+    public double lonDeg(final int k) {
+        return lon[k];
+    }
+
+    /**
+     * @return модельная аномалия высоты точки
+     */
+    public double model(final int k) {
+        return model[k];
+    }
+
+    /**
+     * @return остаточный сигнал точки
+     */
+    public double signal(final int k) {
+        return signal[k];
+    }
+
+    /**
+     * @return ошибка остаточного сигнала точки
+     */
+    public double error(final int k) {
+        return error[k];
+    }
+
+    /**
+     * @return копия массива сигналов
+     */
+    @NotNull
+    public double[] signals() {
+        return signal.clone();
+    }
+
+    /**
+     * @return точки набора в порядке номеров
+     */
+    @NotNull
+    public List<Geodetic> points() {
+        return points;
+    }
+}
@@ -0,0 +1,77 @@
+package by.geo.point;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Хранилище окна грида: смещает индексы и обращается
+ * к хранилищу родительского грида без копирования.
+ *
+ * <p>Индексы проверяются по размерам окна, чтобы обращение
+ * не попало в соседнее окно того же хранилища.</p>
+ */
+final class WindowGridStorage implements GridStorage {
+
+    @NotNull
+    private final GridStorage parent;
+    private final int di, dj;
+    private final int rows, cols;
+
+    private WindowGridStorage(@NotNull final GridStorage parent, final int di, final int dj,
+                              final int rows, final int cols) {
+        this.parent = parent;
+        this.di = di;
+        this.dj = dj;
+        this.rows = rows;
+        this.cols = cols;
+    }
+
+    /**
+     * Окно поверх хранилища; окно окна ссылается на исходное хранилище.
+     *
+     * @param rows число строк окна
+     * @param cols число столбцов окна
+     */
+    @NotNull
+    static GridStorage of(@NotNull final GridStorage storage, final int di, final int dj,
+                          final int rows, final int cols) {
+        if (storage instanceof WindowGridStorage) {
+            final WindowGridStorage w = (WindowGridStorage) storage;
+            return new WindowGridStorage(w.parent, w.di + di, w.dj + dj, rows, cols);
+        }
+        return new WindowGridStorage(storage, di, dj, rows, cols);
+    }
+
+    @Override
+    public double get(final int i, final int j) {
+        test(i, j, 1);
+        return parent.get(i + di, j + dj);
+    }
+
+    @Override
+    public void set(final int i, final int j, final double value) {
+        test(i, j, 1);
+        parent.set(i + di, j + dj, value);
+    }
+
+    @Override
+    public void getRow(final int i, final int j, final double[] dst, final int off, final int len) {
+        test(i, j, len);
+        parent.getRow(i + di, j + dj, dst, off, len);
+    }
+
+    @Override
+    public void setRow(final int i, final int j, final double[] src, final int off, final int len) {
+        test(i, j, len);
+        parent.setRow(i + di, j + dj, src, off, len);
+    }
+
+    /**
+     * Проверка участка строки {@code i} из {@code len} узлов от столбца {@code j}.
+     */
+    private void test(final int i, final int j, final int len) {
+        if (i < 0 || i >= rows)
+            throw new IllegalArgumentException("i is not valid");
+        if (j < 0 || len < 0 || (long) j + len > cols)
+            throw new IllegalArgumentException("j is not valid");
+    }
+}
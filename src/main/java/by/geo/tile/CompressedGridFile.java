@@ -0,0 +1,525 @@
+package by.geo.tile;
+
+import by.geo.point.Grid;
+import by.geo.util.ChannelIO;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Сжатый файл грида, разбитого на тайлы.
+ *
+ * <p>Формат: заголовок из {@value #HEADER} байт (сигнатура, версия,
+ * число строк и столбцов грида, размеры тайла, способ кодирования,
+ * шаг квантования, границы и шаги грида), индекс тайлов (смещение,
+ * сжатый и исходный размер каждого тайла), затем тайлы, сжатые
+ * {@link Deflater} независимо друг от друга. Порядок байт
+ * little-endian. Любой тайл читается одним позиционным чтением
+ * по индексу, поэтому файл подключается к {@link TileCache}
+ * как обычный {@link TileSource}.</p>
+ *
+ * <p>Без квантования байты значений {@code double} тайла
+ * группируются по разрядам (сначала младшие байты всех значений,
+ * затем следующие), что улучшает сжатие без потерь. С квантованием
+ * значения округляются до кратных шагу, и хранятся разности
+ * с соседним узлом в виде чисел переменной длины; ошибка значения
+ * не превышает половины шага.</p>
+ *
+ * <p>Тайлы сжимаются параллельно в общем пуле {@link ForkJoinPool}
+ * и записываются по порядку; {@link #load()} распаковывает
+ * тайлы параллельно.</p>
+ */
+public final class CompressedGridFile implements TileSource {
+
+    private static final int MAGIC = 0x315A5447; // "GTZ1"
+    private static final int VERSION = 1;
+    static final int HEADER = 88;
+    private static final int ENTRY = 16;
+
+    private static final int LOSSLESS = 0;
+    private static final int QUANTIZED = 1;
+
+    /**
+     * Наибольшее по модулю квантованное значение.
+     */
+    private static final double LIMIT = 0x1p60;
+
+    @NotNull
+    private final FileChannel channel;
+
+    private final double lat0, lon0, lat, lon, dlat, dlon, quantum;
+    private final int rowNumber, colNumber, tileRows, tileCols, codec;
+
+    @NotNull
+    private final long[] offsets;
+    @NotNull
+    private final int[] lengths, rawLengths;
+
+    private CompressedGridFile(@NotNull final FileChannel channel) throws IOException {
+        this.channel = channel;
+
+        final ByteBuffer h = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+        ChannelIO.readFully(channel, h, 0);
+        h.flip();
+        if (h.getInt() != MAGIC || h.getInt() != VERSION) {
+            throw new IOException("not a compressed grid file");
+        }
+        rowNumber = h.getInt();
+        colNumber = h.getInt();
+        tileRows = h.getInt();
+        tileCols = h.getInt();
+        codec = h.getInt();
+        h.getInt();
+        quantum = h.getDouble();
+        lat0 = h.getDouble();
+        lon0 = h.getDouble();
+        lat = h.getDouble();
+        lon = h.getDouble();
+        dlat = h.getDouble();
+        dlon = h.getDouble();
+        if (codec != LOSSLESS && codec != QUANTIZED) {
+            throw new IOException("compressed grid codec " + codec + " is not supported");
+        }
+
+        final int tiles = tileRowNumber() * tileColNumber();
+        final ByteBuffer index = ByteBuffer.allocate(tiles * ENTRY).order(ByteOrder.LITTLE_ENDIAN);
+        ChannelIO.readFully(channel, index, HEADER);
+        index.flip();
+        offsets = new long[tiles];
+        lengths = new int[tiles];
+        rawLengths = new int[tiles];
+        for (int t = 0; t < tiles; t++) {
+            offsets[t] = index.getLong();
+            lengths[t] = index.getInt();
+            rawLengths[t] = index.getInt();
+        }
+    }
+
+    /**
+     * Открыть сжатый файл грида для чтения тайлов.
+     *
+     * @param file файл грида
+     * @return источник тайлов
+     * @throws IOException ошибка чтения или неверный формат
+     */
+    @NotNull
+    public static CompressedGridFile open(@NotNull final String file) throws IOException {
+        final FileChannel ch = FileChannel.open(Paths.get(file), StandardOpenOption.READ);
+        try {
+            return new CompressedGridFile(ch);
+        } catch (IOException e) {
+            ch.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Запись грида в сжатый файл без потерь.
+     *
+     * @param grid     грид
+     * @param file     файл для записи
+     * @param tileRows число строк в тайле
+     * @param tileCols число столбцов в тайле
+     * @throws IllegalArgumentException если размеры тайла не положительны
+     *                                  или тайл превышает 256 МБ
+     * @throws IOException              ошибка записи
+     */
+    public static void write(@NotNull final Grid grid, @NotNull final String file,
+                             final int tileRows, final int tileCols) throws IOException {
+        write(grid, file, tileRows, tileCols, 0.0);
+    }
+
+    /**
+     * Запись грида в сжатый файл.
+     *
+     * @param grid     грид
+     * @param file     файл для записи
+     * @param tileRows число строк в тайле
+     * @param tileCols число столбцов в тайле
+     * @param quantum  шаг квантования значений, например {@code 1e-4}
+     *                 для 0.1 мм; 0 - сжатие без потерь
+     * @throws IllegalArgumentException если размеры тайла не положительны,
+     *                                  тайл превышает 256 МБ, шаг квантования
+     *                                  отрицателен или значение грида
+     *                                  не квантуется с этим шагом
+     * @throws IOException              ошибка записи
+     */
+    public static void write(@NotNull final Grid grid, @NotNull final String file,
+                             final int tileRows, final int tileCols,
+                             final double quantum) throws IOException {
+        if (tileRows < 1 || tileCols < 1 || (long) tileRows * tileCols * 8 > 1 << 28) {
+            throw new IllegalArgumentException("tile size is not valid");
+        }
+        if (!(quantum >= 0) || Double.isInfinite(quantum)) {
+            throw new IllegalArgumentException("quantum is not valid");
+        }
+        final int rows = grid.rowNumber();
+        final int cols = grid.colNumber();
+        final int tileColNumber = (cols + tileCols - 1) / tileCols;
+        final int tiles = ((rows + tileRows - 1) / tileRows) * tileColNumber;
+        final int codec = quantum > 0 ? QUANTIZED : LOSSLESS;
+        final int window = 2 * ForkJoinPool.getCommonPoolParallelism() + 1;
+
+        final ByteBuffer index = ByteBuffer.allocate(tiles * ENTRY).order(ByteOrder.LITTLE_ENDIAN);
+        final Deque<CompletableFuture<byte[][]>> pending = new ArrayDeque<>();
+
+        try (FileChannel ch = FileChannel.open(Paths.get(file), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long pos = HEADER + (long) tiles * ENTRY;
+            ch.position(pos);
+
+            int next = 0;
+            for (int t = 0; t < tiles; t++) {
+                while (next < tiles && pending.size() < window) {
+                    final int ti = next / tileColNumber;
+                    final int tj = next % tileColNumber;
+                    pending.add(CompletableFuture.supplyAsync(() -> {
+                        final byte[] raw = encode(tile(grid, ti, tj, tileRows, tileCols),
+                                tileCols, quantum);
+                        return new byte[][]{deflate(raw), raw};
+                    }));
+                    next++;
+                }
+                final byte[][] chunk = join(pending.poll());
+                index.putLong(pos).putInt(chunk[0].length).putInt(chunk[1].length);
+                ChannelIO.writeFully(ch, ByteBuffer.wrap(chunk[0]));
+                pos += chunk[0].length;
+            }
+
+            final ByteBuffer h = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+            h.putInt(MAGIC).putInt(VERSION)
+                    .putInt(rows).putInt(cols).putInt(tileRows).putInt(tileCols)
+                    .putInt(codec).putInt(0).putDouble(quantum)
+                    .putDouble(grid.latMin()).putDouble(grid.lonMin())
+                    .putDouble(grid.latMax()).putDouble(grid.lonMax())
+                    .putDouble(grid.deltaLat()).putDouble(grid.deltaLon());
+            h.flip();
+            index.flip();
+            ch.position(0);
+            ChannelIO.writeFully(ch, h);
+            ChannelIO.writeFully(ch, index);
+        } finally {
+            for (CompletableFuture<byte[][]> f : pending) {
+                f.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Прочитать весь грид в память, распаковывая тайлы параллельно.
+     *
+     * @return грид
+     * @throws IOException ошибка чтения
+     */
+    @NotNull
+    public Grid load() throws IOException {
+        final Grid grid = Grid.builder()
+                .setLatMin(lat0)
+                .setLonMin(lon0)
+                .setLatMax(lat)
+                .setLonMax(lon)
+                .setDeltaLat(dlat)
+                .setDeltaLon(dlon)
+                .build();
+        if (grid.rowNumber() != rowNumber || grid.colNumber() != colNumber) {
+            throw new IOException("grid size does not match compressed grid file");
+        }
+        final int tileColNumber = tileColNumber();
+        try {
+            IntStream.range(0, offsets.length).parallel().forEach(t -> {
+                final int ti = t / tileColNumber;
+                final int tj = t % tileColNumber;
+                final double[] vals;
+                try {
+                    vals = readTile(ti, tj);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                final int i0 = ti * tileRows;
+                final int j0 = tj * tileCols;
+                for (int r = 0; r < tileRows && i0 + r < rowNumber; r++) {
+                    for (int c = 0; c < tileCols && j0 + c < colNumber; c++) {
+                        grid.setValue(i0 + r, j0 + c, vals[r * tileCols + c]);
+                    }
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return grid;
+    }
+
+    @NotNull
+    @Override
+    public double[] readTile(final int ti, final int tj) throws IOException {
+        if (ti < 0 || ti >= tileRowNumber() || tj < 0 || tj >= tileColNumber()) {
+            throw new IllegalArgumentException("tile is not valid");
+        }
+        final int t = ti * tileColNumber() + tj;
+        final ByteBuffer buf = ByteBuffer.allocate(lengths[t]);
+        ChannelIO.readFully(channel, buf, offsets[t]);
+
+        final byte[] raw = new byte[rawLengths[t]];
+        final Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(buf.array());
+            int n = 0;
+            while (n < raw.length && !inflater.finished()) {
+                final int k = inflater.inflate(raw, n, raw.length - n);
+                if (k == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                n += k;
+            }
+            if (n != raw.length) {
+                throw new IOException("compressed tile is truncated");
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("compressed tile is corrupted", e);
+        } finally {
+            inflater.end();
+        }
+        return decode(raw, tileRows, tileCols, codec == QUANTIZED ? quantum : 0.0);
+    }
+
+    /**
+     * @return шаг квантования значений; 0 - сжатие без потерь
+     */
+    public double quantum() {
+        return quantum;
+    }
+
+    @NotNull
+    private static double[] tile(@NotNull final Grid grid, final int ti, final int tj,
+                                 final int tileRows, final int tileCols) {
+        final double[] vals = new double[tileRows * tileCols];
+        for (int r = 0; r < tileRows; r++) {
+            final int i = ti * tileRows + r;
+            for (int c = 0; c < tileCols; c++) {
+                final int j = tj * tileCols + c;
+                vals[r * tileCols + c] = i < grid.rowNumber() && j < grid.colNumber()
+                        ? grid.getValue(i, j) : Double.NaN;
+            }
+        }
+        return vals;
+    }
+
+    /**
+     * Кодирование значений тайла перед сжатием.
+     *
+     * <p>При квантовании значение предсказывается левым узлом,
+     * а первое значение строки - первым значением предыдущей строки.</p>
+     *
+     * @param quantum шаг квантования; 0 - без потерь
+     */
+    @NotNull
+    private static byte[] encode(@NotNull final double[] vals, final int tileCols,
+                                 final double quantum) {
+        final int n = vals.length;
+        if (quantum == 0) {
+            final byte[] raw = new byte[n * 8];
+            for (int p = 0; p < n; p++) {
+                final long bits = Double.doubleToRawLongBits(vals[p]);
+                for (int k = 0; k < 8; k++) {
+                    raw[k * n + p] = (byte) (bits >>> (8 * k));
+                }
+            }
+            return raw;
+        }
+        byte[] raw = new byte[n * 2 + 16];
+        int len = 0;
+        long prev = 0, above = 0;
+        for (int p = 0; p < n; p++) {
+            if (raw.length - len < 10) {
+                raw = Arrays.copyOf(raw, raw.length * 2);
+            }
+            if (p % tileCols == 0) {
+                prev = above;
+            }
+            final double v = vals[p];
+            if (Double.isNaN(v)) {
+                raw[len++] = 0;
+                continue;
+            }
+            final double s = Math.rint(v / quantum);
+            if (!(Math.abs(s) < LIMIT)) {
+                throw new IllegalArgumentException("value " + v + " is not valid for quantum");
+            }
+            final long q = (long) s;
+            final long d = q - prev;
+            prev = q;
+            if (p % tileCols == 0) {
+                above = q;
+            }
+            // 0 - отсутствующее значение, иначе zigzag(d) + 1
+            long u = ((d << 1) ^ (d >> 63)) + 1;
+            while ((u & ~0x7FL) != 0) {
+                raw[len++] = (byte) ((u & 0x7F) | 0x80);
+                u >>>= 7;
+            }
+            raw[len++] = (byte) u;
+        }
+        return Arrays.copyOf(raw, len);
+    }
+
+    /**
+     * Декодирование значений тайла после распаковки.
+     *
+     * @param quantum шаг квантования; 0 - без потерь
+     */
+    @NotNull
+    private static double[] decode(@NotNull final byte[] raw, final int tileRows, final int tileCols,
+                           final double quantum) throws IOException {
+        final int n = tileRows * tileCols;
+        final double[] vals = new double[n];
+        if (quantum == 0) {
+            if (raw.length != n * 8) {
+                throw new IOException("compressed tile size is not valid");
+            }
+            for (int p = 0; p < n; p++) {
+                long bits = 0;
+                for (int k = 0; k < 8; k++) {
+                    bits |= (raw[k * n + p] & 0xFFL) << (8 * k);
+                }
+                vals[p] = Double.longBitsToDouble(bits);
+            }
+            return vals;
+        }
+        int pos = 0;
+        long prev = 0, above = 0;
+        for (int p = 0; p < n; p++) {
+            if (p % tileCols == 0) {
+                prev = above;
+            }
+            long u = 0;
+            int shift = 0;
+            byte b;
+            do {
+                if (pos == raw.length || shift > 63) {
+                    throw new IOException("compressed tile is corrupted");
+                }
+                b = raw[pos++];
+                u |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            if (u == 0) {
+                vals[p] = Double.NaN;
+                continue;
+            }
+            u--;
+            prev += (u >>> 1) ^ -(u & 1);
+            if (p % tileCols == 0) {
+                above = prev;
+            }
+            vals[p] = prev * quantum;
+        }
+        return vals;
+    }
+
+    @NotNull
+    private static byte[] deflate(@NotNull final byte[] raw) {
+        final Deflater deflater = new Deflater();
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            byte[] out = new byte[raw.length / 2 + 64];
+            int len = 0;
+            while (!deflater.finished()) {
+                if (len == out.length) {
+                    out = Arrays.copyOf(out, out.length * 2);
+                }
+                len += deflater.deflate(out, len, out.length - len);
+            }
+            return Arrays.copyOf(out, len);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    @NotNull
+    private static byte[][] join(@NotNull final CompletableFuture<byte[][]> f) throws IOException {
+        try {
+            return f.join();
+        } catch (CompletionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    @Override
+    public double latMin() {
+        return lat0;
+    }
+
+    @Override
+    public double lonMin() {
+        return lon0;
+    }
+
+    @Override
+    public double latMax() {
+        return lat;
+    }
+
+    @Override
+    public double lonMax() {
+        return lon;
+    }
+
+    @Override
+    public double deltaLat() {
+        return dlat;
+    }
+
+    @Override
+    public double deltaLon() {
+        return dlon;
+    }
+
+    @Override
+    public int rowNumber() {
+        return rowNumber;
+    }
+
+    @Override
+    public int colNumber() {
+        return colNumber;
+    }
+
+    @Override
+    public int tileRows() {
+        return tileRows;
+    }
+
+    @Override
+    public int tileCols() {
+        return tileCols;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
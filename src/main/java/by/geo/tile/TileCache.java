@@ -0,0 +1,325 @@
+package by.geo.tile;
+
+import by.geo.point.Grid;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Кеш тайлов с ограничением по объему памяти.
+ *
+ * <p>Тайлы загружаются из {@link TileSource} только при обращении
+ * к их узлам и вытесняются в порядке давности использования (LRU),
+ * когда суммарный объем превышает заданный предел. Кеш разделен
+ * на сегменты с независимыми блокировками; одновременные запросы
+ * одного тайла ожидают единственную загрузку. При промахе соседние
+ * тайлы загружаются в фоне, так как интерполяция по близким точкам
+ * почти всегда обращается к ним следом.</p>
+ *
+ * <p>Один кеш может обслуживать несколько источников с общим
+ * пределом памяти.</p>
+ */
+public final class TileCache {
+
+    private static final int MAX_SEGMENTS = 16;
+
+    @NotNull
+    private final Segment[] segments;
+    @NotNull
+    private final List<TileSource> sources = new CopyOnWriteArrayList<>();
+    @NotNull
+    private final Map<Long, CompletableFuture<double[]>> loading = new ConcurrentHashMap<>();
+    @Nullable
+    private final Executor prefetcher;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder prefetched = new LongAdder();
+
+    /**
+     * Кеш тайлов с фоновой подгрузкой соседних тайлов
+     * в общем пуле потоков.
+     *
+     * @param maxBytes предельный объем тайлов в байтах
+     */
+    public TileCache(final long maxBytes) {
+        this(maxBytes, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Кеш тайлов.
+     *
+     * @param maxBytes   предельный объем тайлов в байтах
+     * @param prefetcher исполнитель фоновой подгрузки соседних тайлов
+     *                   или {@code null}, чтобы ее отключить
+     * @throws IllegalArgumentException если {@code maxBytes <= 0}
+     */
+    public TileCache(final long maxBytes, @Nullable final Executor prefetcher) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("maxBytes is not valid");
+        }
+        this.prefetcher = prefetcher;
+
+        // не дробить малый кеш на сегменты меньше 1 МБ
+        final int n = (int) Math.max(1, Math.min(MAX_SEGMENTS, maxBytes >> 20));
+        segments = new Segment[n];
+        for (int s = 0; s < n; s++) {
+            segments[s] = new Segment(maxBytes / n);
+        }
+    }
+
+    /**
+     * Подключить источник тайлов и получить грид,
+     * значения которого читаются через кеш.
+     *
+     * <p>Грид доступен только для чтения.</p>
+     *
+     * @param source источник тайлов
+     * @return грид поверх источника
+     * @throws IllegalArgumentException если размеры грида, вычисленные
+     *                                  по границам, не совпадают с источником
+     */
+    @NotNull
+    public Grid attach(@NotNull final TileSource source) {
+        final int id;
+        synchronized (sources) {
+            sources.add(source);
+            id = sources.size() - 1;
+        }
+        final Grid grid = Grid.builder()
+                .setLatMin(source.latMin())
+                .setLonMin(source.lonMin())
+                .setLatMax(source.latMax())
+                .setLonMax(source.lonMax())
+                .setDeltaLat(source.deltaLat())
+                .setDeltaLon(source.deltaLon())
+                .build(new TiledStorage(this, id, source.tileRows(), source.tileCols()));
+
+        if (grid.rowNumber() != source.rowNumber() || grid.colNumber() != source.colNumber()) {
+            throw new IllegalArgumentException("grid size does not match tile source");
+        }
+        return grid;
+    }
+
+    /**
+     * Получить тайл, загрузив его при отсутствии в кеше.
+     *
+     * @throws UncheckedIOException ошибка чтения тайла
+     */
+    @NotNull
+    double[] tile(final int id, final int ti, final int tj) {
+        final long key = key(id, ti, tj);
+        final double[] vals = segment(key).get(key);
+        if (vals != null) {
+            hits.increment();
+            return vals;
+        }
+        misses.increment();
+        final double[] loaded = load(id, ti, tj, key);
+
+        if (prefetcher != null) {
+            prefetchAround(id, ti, tj);
+        }
+        return loaded;
+    }
+
+    @NotNull
+    private double[] load(final int id, final int ti, final int tj, final long key) {
+        final CompletableFuture<double[]> f = new CompletableFuture<>();
+        final CompletableFuture<double[]> prev = loading.putIfAbsent(key, f);
+        if (prev != null) {
+            try {
+                return prev.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof UncheckedIOException
+                        ? (UncheckedIOException) e.getCause() : e;
+            }
+        }
+        try {
+            final Segment seg = segment(key);
+            double[] vals = seg.get(key);
+            if (vals == null) {
+                vals = sources.get(id).readTile(ti, tj);
+                seg.put(key, vals);
+            }
+            f.complete(vals);
+            return vals;
+        } catch (IOException e) {
+            final UncheckedIOException ex = new UncheckedIOException(e);
+            f.completeExceptionally(ex);
+            throw ex;
+        } catch (RuntimeException e) {
+            f.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, f);
+        }
+    }
+
+    private void prefetchAround(final int id, final int ti, final int tj) {
+        final TileSource source = sources.get(id);
+        for (int di = -1; di <= 1; di++) {
+            for (int dj = -1; dj <= 1; dj++) {
+                final int i = ti + di;
+                final int j = tj + dj;
+                if ((di == 0 && dj == 0) || i < 0 || j < 0
+                        || i >= source.tileRowNumber() || j >= source.tileColNumber()) {
+                    continue;
+                }
+                final long key = key(id, i, j);
+                if (segment(key).contains(key) || loading.containsKey(key)) {
+                    continue;
+                }
+                prefetched.increment();
+                prefetcher.execute(() -> {
+                    try {
+                        load(id, i, j, key);
+                    } catch (UncheckedIOException ignored) {
+                        // ошибка повторится при прямом обращении к тайлу
+                    }
+                });
+            }
+        }
+    }
+
+    private static long key(final int id, final int ti, final int tj) {
+        return (long) id << 44 | (long) ti << 22 | tj;
+    }
+
+    @NotNull
+    private Segment segment(final long key) {
+        final long h = key * 0x9E3779B97F4A7C15L;
+        return segments[(int) ((h >>> 32) % segments.length)];
+    }
+
+    /**
+     * Очистить кеш; статистика сохраняется.
+     */
+    public void clear() {
+        for (Segment seg : segments) {
+            seg.clear();
+        }
+    }
+
+    /**
+     * @return объем тайлов в кеше в байтах
+     */
+    public long bytes() {
+        long sum = 0;
+        for (Segment seg : segments) {
+            sum += seg.bytes();
+        }
+        return sum;
+    }
+
+    /**
+     * @return число обращений к тайлам, найденным в кеше
+     */
+    public long hits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return число обращений к тайлам, потребовавших загрузки
+     */
+    public long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return число вытесненных тайлов
+     */
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return число тайлов, запрошенных фоновой подгрузкой
+     */
+    public long prefetched() {
+        return prefetched.sum();
+    }
+
+    /**
+     * @return доля обращений, обслуженных из кеша
+     */
+    public double hitRate() {
+        final long h = hits();
+        final long total = h + misses();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT,
+                "TileCache: %d bytes, hits %d, misses %d, evictions %d, prefetched %d, hit rate %.3f",
+                bytes(), hits(), misses(), evictions(), prefetched(), hitRate());
+    }
+
+    /**
+     * Сегмент кеша: LRU-список тайлов под собственной блокировкой.
+     */
+    private final class Segment {
+        private final long capacity;
+        private long bytes;
+        private final LinkedHashMap<Long, double[]> map =
+                new LinkedHashMap<>(16, 0.75f, true);
+
+        Segment(final long capacity) {
+            this.capacity = capacity;
+        }
+
+        synchronized double[] get(final long key) {
+            return map.get(key);
+        }
+
+        synchronized boolean contains(final long key) {
+            return map.containsKey(key);
+        }
+
+        synchronized void put(final long key, @NotNull final double[] vals) {
+            final double[] old = map.put(key, vals);
+            bytes += sizeOf(vals) - (old != null ? sizeOf(old) : 0);
+
+            // последний загруженный тайл остается даже сверх предела
+            final Iterator<Map.Entry<Long, double[]>> it = map.entrySet().iterator();
+            while (bytes > capacity && it.hasNext()) {
+                final Map.Entry<Long, double[]> e = it.next();
+                if (e.getKey() == key) {
+                    continue;
+                }
+                bytes -= sizeOf(e.getValue());
+                it.remove();
+                evictions.increment();
+            }
+        }
+
+        synchronized void clear() {
+            map.clear();
+            bytes = 0;
+        }
+
+        synchronized long bytes() {
+            return bytes;
+        }
+
+        private long sizeOf(@NotNull final double[] vals) {
+            return (long) vals.length * 8;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package by.geo.tile;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Источник тайлов грида.
+ *
+ * <p>Грид разбит на прямоугольные тайлы по {@link #tileRows()} строк
+ * и {@link #tileCols()} столбцов; тайл {@code (ti, tj)} покрывает строки
+ * {@code [ti * tileRows, (ti + 1) * tileRows)} и столбцы
+ * {@code [tj * tileCols, (tj + 1) * tileCols)}. Реализации должны
+ * допускать одновременное чтение тайлов из нескольких потоков.</p>
+ */
+public interface TileSource extends Closeable {
+
+    /**
+     * @return минимальная широта грида
+     */
+    double latMin();
+
+    /**
+     * @return минимальная долгота грида
+     */
+    double lonMin();
+
+    /**
+     * @return максимальная широта грида
+     */
+    double latMax();
+
+    /**
+     * @return максимальная долгота грида
+     */
+    double lonMax();
+
+    /**
+     * @return шаг по широте
+     */
+    double deltaLat();
+
+    /**
+     * @return шаг по долготе
+     */
+    double deltaLon();
+
+    /**
+     * @return число строк грида
+     */
+    int rowNumber();
+
+    /**
+     * @return число столбцов грида
+     */
+    int colNumber();
+
+    /**
+     * @return число строк в тайле
+     */
+    int tileRows();
+
+    /**
+     * @return число столбцов в тайле
+     */
+    int tileCols();
+
+    /**
+     * @return число тайлов по широте
+     */
+    default int tileRowNumber() {
+        return (rowNumber() + tileRows() - 1) / tileRows();
+    }
+
+    /**
+     * @return число тайлов по долготе
+     */
+    default int tileColNumber() {
+        return (colNumber() + tileCols() - 1) / tileCols();
+    }
+
+    /**
+     * Прочитать тайл.
+     *
+     * @param ti номер тайла по широте
+     * @param tj номер тайла по долготе
+     * @return значения тайла по строкам, длиной {@code tileRows * tileCols};
+     * узлы за пределами грида заполнены {@code NaN}
+     * @throws IOException ошибка чтения
+     */
+    @NotNull
+    double[] readTile(final int ti, final int tj) throws IOException;
+
+}
@@ -0,0 +1,200 @@
+package by.geo.tile;
+
+import by.geo.point.Grid;
+import by.geo.util.ChannelIO;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Файл грида, разбитого на тайлы.
+ *
+ * <p>Формат: заголовок из {@value #HEADER} байт (сигнатура, версия,
+ * число строк и столбцов грида, размеры тайла, границы и шаги грида),
+ * затем тайлы по строкам тайловой сетки. Каждый тайл хранит
+ * {@code tileRows * tileCols} значений {@code double} в порядке
+ * little-endian; узлы за пределами грида заполнены {@code NaN}.
+ * Порядок байт фиксирован, поэтому тайл читается одним позиционным
+ * чтением без разбора.</p>
+ */
+public final class TiledGridFile implements TileSource {
+
+    private static final int MAGIC = 0x314C5447; // "GTL1"
+    private static final int VERSION = 1;
+    static final int HEADER = 72;
+
+    @NotNull
+    private final FileChannel channel;
+
+    private final double lat0, lon0, lat, lon, dlat, dlon;
+    private final int rowNumber, colNumber, tileRows, tileCols;
+
+    private TiledGridFile(@NotNull final FileChannel channel) throws IOException {
+        this.channel = channel;
+
+        final ByteBuffer h = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+        ChannelIO.readFully(channel, h, 0);
+        h.flip();
+        if (h.getInt() != MAGIC || h.getInt() != VERSION) {
+            throw new IOException("not a tiled grid file");
+        }
+        rowNumber = h.getInt();
+        colNumber = h.getInt();
+        tileRows = h.getInt();
+        tileCols = h.getInt();
+        lat0 = h.getDouble();
+        lon0 = h.getDouble();
+        lat = h.getDouble();
+        lon = h.getDouble();
+        dlat = h.getDouble();
+        dlon = h.getDouble();
+    }
+
+    /**
+     * Открыть файл грида для чтения тайлов.
+     *
+     * @param file файл грида
+     * @return источник тайлов
+     * @throws IOException ошибка чтения или неверный формат
+     */
+    @NotNull
+    public static TiledGridFile open(@NotNull final String file) throws IOException {
+        final FileChannel ch = FileChannel.open(Paths.get(file), StandardOpenOption.READ);
+        try {
+            return new TiledGridFile(ch);
+        } catch (IOException e) {
+            ch.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Запись грида в файл, разбитый на тайлы.
+     *
+     * @param grid     грид
+     * @param file     файл для записи
+     * @param tileRows число строк в тайле
+     * @param tileCols число столбцов в тайле
+     * @throws IllegalArgumentException если размеры тайла не положительны
+     *                                  или тайл превышает 2 ГБ
+     * @throws IOException              ошибка записи
+     */
+    public static void write(@NotNull final Grid grid, @NotNull final String file,
+                             final int tileRows, final int tileCols) throws IOException {
+        if (tileRows < 1 || tileCols < 1 || (long) tileRows * tileCols * 8 > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("tile size is not valid");
+        }
+        final int rows = grid.rowNumber();
+        final int cols = grid.colNumber();
+
+        try (FileChannel ch = FileChannel.open(Paths.get(file), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+
+            final ByteBuffer h = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+            h.putInt(MAGIC).putInt(VERSION)
+                    .putInt(rows).putInt(cols).putInt(tileRows).putInt(tileCols)
+                    .putDouble(grid.latMin()).putDouble(grid.lonMin())
+                    .putDouble(grid.latMax()).putDouble(grid.lonMax())
+                    .putDouble(grid.deltaLat()).putDouble(grid.deltaLon());
+            h.flip();
+            ChannelIO.writeFully(ch, h);
+
+            final ByteBuffer tile = ByteBuffer.allocate(tileRows * tileCols * 8)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+
+            for (int ti = 0; ti * tileRows < rows; ti++) {
+                for (int tj = 0; tj * tileCols < cols; tj++) {
+                    tile.clear();
+                    for (int r = 0; r < tileRows; r++) {
+                        final int i = ti * tileRows + r;
+                        for (int c = 0; c < tileCols; c++) {
+                            final int j = tj * tileCols + c;
+                            tile.putDouble(i < rows && j < cols
+                                    ? grid.getValue(i, j) : Double.NaN);
+                        }
+                    }
+                    tile.flip();
+                    ChannelIO.writeFully(ch, tile);
+                }
+            }
+        }
+    }
+
+    @NotNull
+    @Override
+    public double[] readTile(final int ti, final int tj) throws IOException {
+        if (ti < 0 || ti >= tileRowNumber() || tj < 0 || tj >= tileColNumber()) {
+            throw new IllegalArgumentException("tile is not valid");
+        }
+        final int size = tileRows * tileCols;
+        final long pos = HEADER + ((long) ti * tileColNumber() + tj) * size * 8;
+
+        final ByteBuffer buf = ByteBuffer.allocate(size * 8).order(ByteOrder.LITTLE_ENDIAN);
+        ChannelIO.readFully(channel, buf, pos);
+        buf.flip();
+
+        final double[] vals = new double[size];
+        buf.asDoubleBuffer().get(vals);
+        return vals;
+    }
+
+    @Override
+    public double latMin() {
+        return lat0;
+    }
+
+    @Override
+    public double lonMin() {
+        return lon0;
+    }
+
+    @Override
+    public double latMax() {
+        return lat;
+    }
+
+    @Override
+    public double lonMax() {
+        return lon;
+    }
+
+    @Override
+    public double deltaLat() {
+        return dlat;
+    }
+
+    @Override
+    public double deltaLon() {
+        return dlon;
+    }
+
+    @Override
+    public int rowNumber() {
+        return rowNumber;
+    }
+
+    @Override
+    public int colNumber() {
+        return colNumber;
+    }
+
+    @Override
+    public int tileRows() {
+        return tileRows;
+    }
+
+    @Override
+    public int tileCols() {
+        return tileCols;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
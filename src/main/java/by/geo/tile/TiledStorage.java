@@ -0,0 +1,59 @@
+package by.geo.tile;
+
+import by.geo.point.GridStorage;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Хранилище значений грида, читающее узлы из тайлов через кеш.
+ *
+ * <p>Последний использованный тайл запоминается, поэтому
+ * последовательные обращения к узлам одного тайла (например,
+ * четыре узла ячейки при интерполяции) не проходят через кеш.</p>
+ */
+final class TiledStorage implements GridStorage {
+
+    @NotNull
+    private final TileCache cache;
+    private final int id;
+    private final int tileRows, tileCols;
+
+    private volatile Tile last;
+
+    TiledStorage(@NotNull final TileCache cache, final int id,
+                 final int tileRows, final int tileCols) {
+        this.cache = cache;
+        this.id = id;
+        this.tileRows = tileRows;
+        this.tileCols = tileCols;
+    }
+
+    @Override
+    public double get(final int i, final int j) {
+        final int ti = i / tileRows;
+        final int tj = j / tileCols;
+
+        Tile t = last;
+        if (t == null || t.ti != ti || t.tj != tj) {
+            t = new Tile(ti, tj, cache.tile(id, ti, tj));
+            last = t;
+        }
+        return t.vals[(i - ti * tileRows) * tileCols + (j - tj * tileCols)];
+    }
+
+    @Override
+    public void set(final int i, final int j, final double value) {
+        throw new UnsupportedOperationException("tiled grid is read-only");
+    }
+
+    private static final class Tile {
+        private final int ti, tj;
+        @NotNull
+        private final double[] vals;
+
+        Tile(final int ti, final int tj, @NotNull final double[] vals) {
+            this.ti = ti;
+            this.tj = tj;
+            this.vals = vals;
+        }
+    }
+}
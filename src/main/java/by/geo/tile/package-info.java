@@ -0,0 +1,4 @@
+/**
+ * Тайловое хранение гридов и кеш тайлов для ленивой загрузки.
+ */
+package by.geo.tile;
@@ -0,0 +1,76 @@
+package by.geo.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Растущий байтовый буфер для текстового вывода.
+ *
+ * <p>Предназначен для повторного использования: после записи
+ * в канал буфер очищается, а выделенная память сохраняется.</p>
+ */
+final class ByteSink {
+
+    @NotNull
+    private byte[] buf;
+    private int len;
+
+    ByteSink(final int capacity) {
+        buf = new byte[Math.max(16, capacity)];
+    }
+
+    /**
+     * Гарантировать место для {@code n} байт.
+     */
+    void ensure(final int n) {
+        if (len + n > buf.length) {
+            final byte[] b = new byte[Math.max(buf.length * 2, len + n)];
+            System.arraycopy(buf, 0, b, 0, len);
+            buf = b;
+        }
+    }
+
+    void put(final byte b) {
+        ensure(1);
+        buf[len++] = b;
+    }
+
+    /**
+     * Запись символов ASCII.
+     */
+    void put(@NotNull final String s) {
+        ensure(s.length());
+        for (int n = 0; n < s.length(); n++) {
+            buf[len++] = (byte) s.charAt(n);
+        }
+    }
+
+    /**
+     * Запись без проверки места; место резервируется {@link #ensure(int)}.
+     */
+    void putUnchecked(final byte b) {
+        buf[len++] = b;
+    }
+
+    int length() {
+        return len;
+    }
+
+    void clear() {
+        len = 0;
+    }
+
+    /**
+     * Записать содержимое в канал целиком и очистить буфер.
+     */
+    void writeTo(@NotNull final WritableByteChannel ch) throws IOException {
+        final ByteBuffer b = ByteBuffer.wrap(buf, 0, len);
+        while (b.hasRemaining()) {
+            ch.write(b);
+        }
+        clear();
+    }
+}
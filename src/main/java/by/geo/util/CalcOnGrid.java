@@ -2,8 +2,7 @@ package by.geo.util;
 
 import by.geo.math.GeoidCalculator;
 import by.geo.point.Grid;
-import by.geo.point.Node;
-import org.apache.commons.math3.util.Pair;
+import by.geo.point.GridCursor;
 import org.jetbrains.annotations.NotNull;
 
 /**
@@ -31,15 +30,14 @@ public class CalcOnGrid {
      * Выполнить вычисление высот геоида для узлов регулярной сетки.
      */
     public void perform() {
-        new GridToNodes(grid).knots()
-                .parallelStream()
-                .map(knot -> new Pair<>(knot, calc.applyAsDouble(knot)))
-                .forEach(pair -> {
+        final ThreadLocal<GridCursor> cursors =
+                ThreadLocal.withInitial(() -> new GridCursor(grid));
 
-                    Node node = pair.getFirst();
-                    double val = pair.getSecond();
-
-                    grid.setValue(node.getI(), node.getJ(), val);
+        grid.nodes()
+                .parallel()
+                .forEach(k -> {
+                    final GridCursor node = cursors.get().moveTo(k);
+                    grid.setValue(node.getI(), node.getJ(), calc.applyAsDouble(node));
                 });
     }
 }
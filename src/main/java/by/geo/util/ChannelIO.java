@@ -0,0 +1,54 @@
+package by.geo.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Полное чтение и запись буферов через файловый канал.
+ *
+ * <p>Общие для двоичных форматов гридов и тайловых файлов: канал
+ * может прочитать или записать меньше, чем осталось в буфере.</p>
+ */
+public final class ChannelIO {
+
+    private ChannelIO() {
+    }
+
+    /**
+     * Прочитать остаток буфера с позиции файла.
+     *
+     * @param ch  канал
+     * @param buf буфер
+     * @param pos позиция в файле
+     * @throws EOFException если файл закончился раньше
+     * @throws IOException  при ошибке чтения
+     */
+    public static void readFully(@NotNull final FileChannel ch, @NotNull final ByteBuffer buf,
+                                 long pos) throws IOException {
+        while (buf.hasRemaining()) {
+            final int n = ch.read(buf, pos);
+            if (n < 0) {
+                throw new EOFException("unexpected end of file");
+            }
+            pos += n;
+        }
+    }
+
+    /**
+     * Записать остаток буфера в текущую позицию канала.
+     *
+     * @param ch  канал
+     * @param buf буфер
+     * @throws IOException при ошибке записи
+     */
+    public static void writeFully(@NotNull final FileChannel ch, @NotNull final ByteBuffer buf)
+            throws IOException {
+        while (buf.hasRemaining()) {
+            ch.write(buf);
+        }
+    }
+}
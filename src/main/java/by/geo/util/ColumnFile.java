@@ -0,0 +1,663 @@
+package by.geo.util;
+
+import by.geo.point.ControlPointSet;
+import by.geo.point.Observation;
+import by.geo.point.PrognosisNode;
+import by.geo.point.SignalSet;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Столбцовый двоичный файл с описанием столбцов.
+ *
+ * <p>Формат: сигнатура и версия, затем пакеты строк. Заголовок пакета
+ * содержит число строк, число столбцов и размер данных пакета,
+ * а также имя и тип каждого столбца; данные пакета - столбцы подряд,
+ * каждый выровнен на 8 байт. Порядок байт little-endian. Новые пакеты
+ * дописываются в конец файла без его перезаписи; набор столбцов
+ * всех пакетов должен совпадать.</p>
+ *
+ * <p>Файл читается через отображение в память с переносом столбцов
+ * целиком. Длина каждого пакета сверяется с его заголовком;
+ * обрезанный последний пакет (прерванная дозапись) считается ошибкой
+ * формата и при чтении, и при дозаписи.</p>
+ *
+ * <p>Для наборов контрольных точек, сигналов и результатов прогноза
+ * есть готовые методы записи и чтения, что позволяет продолжить
+ * расчет с результатов предыдущего этапа.</p>
+ */
+public final class ColumnFile {
+
+    private static final int MAGIC = 0x31464347; // "GCF1"
+    private static final int VERSION = 1;
+    private static final int BATCH = 0x48435442; // "BTCH"
+    private static final int FILE_HEADER = 8;
+    private static final int BATCH_HEADER = 24;
+
+    private static final String[] CONTROL_POINTS = {
+            "lat", "lon", "normal", "geodetic", "normalError", "geodeticError"};
+    private static final String[] SIGNALS = {"lat", "lon", "model", "signal", "error"};
+
+    private ColumnFile() {
+    }
+
+    /**
+     * Дописать пакет в файл; файл создается, если его нет.
+     *
+     * @param file  файл
+     * @param batch пакет
+     * @throws IOException если запись не удалась, файл поврежден
+     *                     или столбцы пакета не совпадают со столбцами файла
+     */
+    public static void append(@NotNull final String file, @NotNull final Batch batch)
+            throws IOException {
+        final Path path = Paths.get(file);
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            final long size = ch.size();
+            if (size == 0) {
+                final ByteBuffer h = ByteBuffer.allocate(FILE_HEADER).order(ByteOrder.LITTLE_ENDIAN);
+                h.putInt(MAGIC).putInt(VERSION).flip();
+                ChannelIO.writeFully(ch, h);
+            } else {
+                // пакеты проверяются до конца файла, чтобы не дописать
+                // после обрезанного пакета
+                final List<BatchHeader> headers = headers(ch, file);
+                if (!headers.isEmpty() && !headers.get(0).schema.equals(batch.schema())) {
+                    throw new IOException("batch columns do not match " + file);
+                }
+            }
+            ch.position(size == 0 ? FILE_HEADER : size);
+            for (ByteBuffer b : batch.encode()) {
+                ChannelIO.writeFully(ch, b);
+            }
+        }
+    }
+
+    /**
+     * Прочитать файл.
+     *
+     * @param file файл
+     * @return таблица всех пакетов
+     * @throws IOException ошибка чтения или неверный формат
+     */
+    @NotNull
+    public static Table read(@NotNull final String file) throws IOException {
+        try (FileChannel ch = FileChannel.open(Paths.get(file), StandardOpenOption.READ)) {
+            final List<BatchHeader> headers = headers(ch, file);
+            final List<ByteBuffer> batches = new ArrayList<>(headers.size());
+            for (BatchHeader h : headers) {
+                batches.add(ch.map(FileChannel.MapMode.READ_ONLY, h.pos, h.length)
+                        .order(ByteOrder.LITTLE_ENDIAN));
+            }
+            return new Table(headers.isEmpty() ? Collections.<Column>emptyList()
+                    : headers.get(0).schema, batches);
+        }
+    }
+
+    /**
+     * Дописать контрольные точки.
+     *
+     * @param file   файл
+     * @param points контрольные точки
+     * @throws IOException ошибка записи
+     */
+    public static void append(@NotNull final String file, @NotNull final ControlPointSet points)
+            throws IOException {
+        final int n = points.size();
+        final double[][] cols = new double[CONTROL_POINTS.length][n];
+        for (int k = 0; k < n; k++) {
+            cols[0][k] = points.latDeg(k);
+            cols[1][k] = points.lonDeg(k);
+            cols[2][k] = points.normalHeight(k);
+            cols[3][k] = points.geodeticHeight(k);
+            cols[4][k] = points.normalHeightError(k);
+            cols[5][k] = points.geodeticHeightError(k);
+        }
+        final Batch batch = new Batch(n);
+        for (int c = 0; c < cols.length; c++) {
+            batch.add(CONTROL_POINTS[c], cols[c]);
+        }
+        append(file, batch);
+    }
+
+    /**
+     * Дописать сигналы контрольных точек.
+     *
+     * @param file    файл
+     * @param signals сигналы
+     * @throws IOException ошибка записи
+     */
+    public static void append(@NotNull final String file, @NotNull final SignalSet signals)
+            throws IOException {
+        final int n = signals.size();
+        final double[][] cols = new double[SIGNALS.length][n];
+        for (int k = 0; k < n; k++) {
+            cols[0][k] = signals.latDeg(k);
+            cols[1][k] = signals.lonDeg(k);
+            cols[2][k] = signals.model(k);
+            cols[3][k] = signals.signal(k);
+            cols[4][k] = signals.error(k);
+        }
+        final Batch batch = new Batch(n);
+        for (int c = 0; c < cols.length; c++) {
+            batch.add(SIGNALS[c], cols[c]);
+        }
+        append(file, batch);
+    }
+
+    /**
+     * Дописать результаты прогноза.
+     *
+     * <p>Столбцы: {@code i}, {@code j} - номера узла, {@code lat},
+     * {@code lon} - координаты, {@code model} - моделированная
+     * аномалия высоты, {@code value} и {@code error} - прогноз
+     * сигнала и его ошибка.</p>
+     *
+     * @param file  файл
+     * @param nodes точки прогноза
+     * @throws IOException ошибка записи
+     */
+    public static void append(@NotNull final String file,
+                              @NotNull final Collection<PrognosisNode> nodes) throws IOException {
+        final int n = nodes.size();
+        final int[] i = new int[n], j = new int[n];
+        final double[] lat = new double[n], lon = new double[n], model = new double[n],
+                value = new double[n], error = new double[n];
+        int p = 0;
+        for (PrognosisNode node : nodes) {
+            i[p] = node.getI();
+            j[p] = node.getJ();
+            lat[p] = node.latDeg();
+            lon[p] = node.lonDeg();
+            model[p] = node.model().value();
+            value[p] = node.signal().value();
+            error[p] = node.signal().error();
+            p++;
+        }
+        append(file, new Batch(n)
+                .add("i", i).add("j", j)
+                .add("lat", lat).add("lon", lon).add("model", model)
+                .add("value", value).add("error", error));
+    }
+
+    /**
+     * Прочитать контрольные точки, записанные
+     * {@link #append(String, ControlPointSet)}.
+     *
+     * @param file файл
+     * @return контрольные точки всех пакетов
+     * @throws IOException ошибка чтения или нет нужных столбцов
+     */
+    @NotNull
+    public static ControlPointSet readControlPoints(@NotNull final String file) throws IOException {
+        final Table t = read(file);
+        return new ControlPointSet(t.doubles("lat"), t.doubles("lon"), t.doubles("normal"),
+                t.doubles("geodetic"), t.doubles("normalError"), t.doubles("geodeticError"));
+    }
+
+    /**
+     * Прочитать сигналы, записанные {@link #append(String, SignalSet)}.
+     *
+     * @param file файл
+     * @return сигналы всех пакетов
+     * @throws IOException ошибка чтения или нет нужных столбцов
+     */
+    @NotNull
+    public static SignalSet readSignals(@NotNull final String file) throws IOException {
+        final Table t = read(file);
+        return SignalSet.of(t.doubles("lat"), t.doubles("lon"), t.doubles("model"),
+                t.doubles("signal"), t.doubles("error"));
+    }
+
+    /**
+     * Прочитать результаты прогноза, записанные
+     * {@link #append(String, Collection)}.
+     *
+     * @param file файл
+     * @return точки прогноза всех пакетов
+     * @throws IOException ошибка чтения или нет нужных столбцов
+     */
+    @NotNull
+    public static List<PrognosisNode> readPrognosis(@NotNull final String file) throws IOException {
+        final Table t = read(file);
+        final int[] i = t.ints("i"), j = t.ints("j");
+        final double[] lat = t.doubles("lat"), lon = t.doubles("lon"), model = t.doubles("model"),
+                value = t.doubles("value"), error = t.doubles("error");
+        final List<PrognosisNode> nodes = new ArrayList<>(t.size());
+        for (int p = 0; p < t.size(); p++) {
+            nodes.add(new PrognosisNode(new PrognosisNode(lat[p], lon[p], i[p], j[p], model[p]),
+                    new Observation(value[p], error[p])));
+        }
+        return nodes;
+    }
+
+    private static void checkFileHeader(@NotNull final FileChannel ch) throws IOException {
+        final ByteBuffer h = ByteBuffer.allocate(FILE_HEADER).order(ByteOrder.LITTLE_ENDIAN);
+        ChannelIO.readFully(ch, h, 0);
+        h.flip();
+        if (h.getInt() != MAGIC || h.getInt() != VERSION) {
+            throw new IOException("not a column file");
+        }
+    }
+
+    /**
+     * Заголовки всех пакетов файла.
+     *
+     * <p>Каждый пакет проверяется: длина должна точно равняться
+     * заголовку с именами и выровненным столбцам при его числе строк,
+     * пакеты должны занимать файл до конца, а столбцы всех пакетов -
+     * совпадать.</p>
+     */
+    @NotNull
+    private static List<BatchHeader> headers(@NotNull final FileChannel ch,
+                                             @NotNull final String file) throws IOException {
+        checkFileHeader(ch);
+        final long size = ch.size();
+        final List<BatchHeader> headers = new ArrayList<>();
+        long pos = FILE_HEADER;
+        while (pos < size) {
+            final BatchHeader h = readHeader(ch, pos);
+            if (pos + h.length > size) {
+                throw new IOException("last batch is truncated in " + file);
+            }
+            if (!headers.isEmpty() && !headers.get(0).schema.equals(h.schema)) {
+                throw new IOException("batch columns differ in " + file);
+            }
+            headers.add(h);
+            pos += h.length;
+        }
+        return headers;
+    }
+
+    /**
+     * Заголовок пакета, начинающегося с {@code pos}.
+     */
+    @NotNull
+    private static BatchHeader readHeader(@NotNull final FileChannel ch, final long pos)
+            throws IOException {
+        final ByteBuffer h = ByteBuffer.allocate(BATCH_HEADER).order(ByteOrder.LITTLE_ENDIAN);
+        ChannelIO.readFully(ch, h, pos);
+        h.flip();
+        if (h.getInt() != BATCH) {
+            throw new IOException("column file batch is not valid");
+        }
+        final int rows = h.getInt();
+        final int count = h.getInt();
+        h.getInt();
+        final long length = h.getLong();
+        if (rows < 0 || count < 0 || count > 1 << 16) {
+            throw new IOException("column file batch is not valid");
+        }
+        final List<Column> schema = new ArrayList<>(count);
+        long p = pos + BATCH_HEADER;
+        final ByteBuffer c = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+        for (int k = 0; k < count; k++) {
+            c.clear();
+            ChannelIO.readFully(ch, c, p);
+            final int type = c.get(0);
+            final int nameLength = c.getShort(2) & 0xFFFF;
+            if (type < 0 || type >= Type.values().length) {
+                throw new IOException("column type " + type + " is not supported");
+            }
+            final ByteBuffer name = ByteBuffer.allocate(nameLength);
+            ChannelIO.readFully(ch, name, p + 4);
+            schema.add(new Column(new String(name.array(), StandardCharsets.UTF_8),
+                    Type.values()[type]));
+            p += 4 + nameLength;
+        }
+
+        long expected = align(p - pos);
+        for (Column column : schema) {
+            expected += align((long) rows * column.type.size);
+        }
+        if (length != expected) {
+            throw new IOException("column file batch length is not valid");
+        }
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("column file batch is too large");
+        }
+        return new BatchHeader(pos, length, schema);
+    }
+
+    private static int align(final int n) {
+        return (n + 7) & ~7;
+    }
+
+    private static long align(final long n) {
+        return (n + 7) & ~7L;
+    }
+
+    /**
+     * Проверенный заголовок пакета: начало, длина и столбцы.
+     */
+    private static final class BatchHeader {
+        private final long pos, length;
+        @NotNull
+        private final List<Column> schema;
+
+        BatchHeader(final long pos, final long length, @NotNull final List<Column> schema) {
+            this.pos = pos;
+            this.length = length;
+            this.schema = schema;
+        }
+    }
+
+    /**
+     * Тип столбца.
+     */
+    public enum Type {
+        float64(8),
+        float32(4),
+        int32(4);
+
+        private final int size;
+
+        Type(final int size) {
+            this.size = size;
+        }
+    }
+
+    /**
+     * Описание столбца.
+     */
+    private static final class Column {
+
+        @NotNull
+        private final String name;
+        @NotNull
+        private final Type type;
+
+        Column(@NotNull final String name, @NotNull final Type type) {
+            this.name = name;
+            this.type = type;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            final Column that = (Column) o;
+            return name.equals(that.name) && type == that.type;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * name.hashCode() + type.hashCode();
+        }
+    }
+
+    /**
+     * Пакет строк для записи.
+     */
+    public static final class Batch {
+
+        private final int rows;
+        @NotNull
+        private final Map<String, Object> columns = new LinkedHashMap<>();
+
+        /**
+         * @param rows число строк
+         */
+        public Batch(final int rows) {
+            if (rows < 0) {
+                throw new IllegalArgumentException("rows is not valid");
+            }
+            this.rows = rows;
+        }
+
+        /**
+         * Добавить столбец {@code float64}.
+         *
+         * @throws IllegalArgumentException если длина столбца не равна
+         *                                  числу строк или имя занято
+         */
+        @NotNull
+        public Batch add(@NotNull final String name, @NotNull final double[] values) {
+            return put(name, values, values.length);
+        }
+
+        /**
+         * Добавить столбец {@code float32}.
+         *
+         * @throws IllegalArgumentException если длина столбца не равна
+         *                                  числу строк или имя занято
+         */
+        @NotNull
+        public Batch add(@NotNull final String name, @NotNull final float[] values) {
+            return put(name, values, values.length);
+        }
+
+        /**
+         * Добавить столбец {@code int32}.
+         *
+         * @throws IllegalArgumentException если длина столбца не равна
+         *                                  числу строк или имя занято
+         */
+        @NotNull
+        public Batch add(@NotNull final String name, @NotNull final int[] values) {
+            return put(name, values, values.length);
+        }
+
+        @NotNull
+        private Batch put(@NotNull final String name, @NotNull final Object values,
+                          final int length) {
+            if (length != rows) {
+                throw new IllegalArgumentException("column length is not valid");
+            }
+            if (name.isEmpty() || name.getBytes(StandardCharsets.UTF_8).length > 0xFFFF
+                    || columns.containsKey(name)) {
+                throw new IllegalArgumentException("column name is not valid");
+            }
+            columns.put(name, values);
+            return this;
+        }
+
+        @NotNull
+        private List<Column> schema() {
+            final List<Column> schema = new ArrayList<>(columns.size());
+            for (Map.Entry<String, Object> e : columns.entrySet()) {
+                schema.add(new Column(e.getKey(), type(e.getValue())));
+            }
+            return schema;
+        }
+
+        @NotNull
+        private static Type type(@NotNull final Object values) {
+            if (values instanceof double[]) return Type.float64;
+            if (values instanceof float[]) return Type.float32;
+            return Type.int32;
+        }
+
+        /**
+         * Заголовок и столбцы пакета для записи.
+         */
+        @NotNull
+        private List<ByteBuffer> encode() {
+            int names = 0;
+            for (String name : columns.keySet()) {
+                names += 4 + name.getBytes(StandardCharsets.UTF_8).length;
+            }
+            final int headerLength = align(BATCH_HEADER + names);
+            long length = headerLength;
+            for (Object v : columns.values()) {
+                length += align(rows * type(v).size);
+            }
+
+            final ByteBuffer h = ByteBuffer.allocate(headerLength).order(ByteOrder.LITTLE_ENDIAN);
+            h.putInt(BATCH).putInt(rows).putInt(columns.size()).putInt(0).putLong(length);
+            for (Map.Entry<String, Object> e : columns.entrySet()) {
+                final byte[] name = e.getKey().getBytes(StandardCharsets.UTF_8);
+                h.put((byte) type(e.getValue()).ordinal()).put((byte) 0)
+                        .putShort((short) name.length).put(name);
+            }
+            h.clear();
+
+            final List<ByteBuffer> out = new ArrayList<>(columns.size() + 1);
+            out.add(h);
+            for (Object v : columns.values()) {
+                final ByteBuffer b = ByteBuffer.allocate(align(rows * type(v).size))
+                        .order(ByteOrder.LITTLE_ENDIAN);
+                if (v instanceof double[]) {
+                    b.asDoubleBuffer().put((double[]) v);
+                } else if (v instanceof float[]) {
+                    b.asFloatBuffer().put((float[]) v);
+                } else {
+                    b.asIntBuffer().put((int[]) v);
+                }
+                out.add(b);
+            }
+            return out;
+        }
+    }
+
+    /**
+     * Прочитанные столбцы всех пакетов файла.
+     */
+    public static final class Table {
+
+        @NotNull
+        private final List<Column> schema;
+        @NotNull
+        private final List<ByteBuffer> batches;
+        private final int size;
+
+        private Table(@NotNull final List<Column> schema, @NotNull final List<ByteBuffer> batches) {
+            this.schema = schema;
+            this.batches = batches;
+            long n = 0;
+            for (ByteBuffer b : batches) {
+                n += b.getInt(4);
+            }
+            if (n > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("column file is too large");
+            }
+            size = (int) n;
+        }
+
+        /**
+         * @return число строк во всех пакетах
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * @return имена столбцов
+         */
+        @NotNull
+        public List<String> columns() {
+            final List<String> names = new ArrayList<>(schema.size());
+            for (Column c : schema) {
+                names.add(c.name);
+            }
+            return names;
+        }
+
+        /**
+         * @return тип столбца
+         * @throws IOException если столбца нет
+         */
+        @NotNull
+        public Type type(@NotNull final String name) throws IOException {
+            return schema.get(index(name)).type;
+        }
+
+        /**
+         * Значения столбца как {@code double}.
+         *
+         * @param name имя столбца любого типа
+         * @return значения всех пакетов подряд
+         * @throws IOException если столбца нет
+         */
+        @NotNull
+        public double[] doubles(@NotNull final String name) throws IOException {
+            final int c = index(name);
+            final Type type = schema.get(c).type;
+            final double[] out = new double[size];
+            int p = 0;
+            for (ByteBuffer b : batches) {
+                final int rows = b.getInt(4);
+                final ByteBuffer col = column(b, c);
+                if (type == Type.float64) {
+                    col.asDoubleBuffer().get(out, p, rows);
+                } else if (type == Type.float32) {
+                    for (int k = 0; k < rows; k++) {
+                        out[p + k] = col.getFloat(k * 4);
+                    }
+                } else {
+                    for (int k = 0; k < rows; k++) {
+                        out[p + k] = col.getInt(k * 4);
+                    }
+                }
+                p += rows;
+            }
+            return out;
+        }
+
+        /**
+         * Значения столбца {@code int32}.
+         *
+         * @param name имя столбца
+         * @return значения всех пакетов подряд
+         * @throws IOException если столбца нет или он другого типа
+         */
+        @NotNull
+        public int[] ints(@NotNull final String name) throws IOException {
+            final int c = index(name);
+            if (schema.get(c).type != Type.int32) {
+                throw new IOException("column " + name + " is not int32");
+            }
+            final int[] out = new int[size];
+            int p = 0;
+            for (ByteBuffer b : batches) {
+                final int rows = b.getInt(4);
+                column(b, c).asIntBuffer().get(out, p, rows);
+                p += rows;
+            }
+            return out;
+        }
+
+        private int index(@NotNull final String name) throws IOException {
+            for (int c = 0; c < schema.size(); c++) {
+                if (schema.get(c).name.equals(name)) {
+                    return c;
+                }
+            }
+            throw new IOException("column " + name + " is missing");
+        }
+
+        /**
+         * Область данных столбца {@code c} пакета.
+         */
+        @NotNull
+        private ByteBuffer column(@NotNull final ByteBuffer batch, final int c) {
+            final int rows = batch.getInt(4);
+            int names = 0;
+            for (Column col : schema) {
+                names += 4 + col.name.getBytes(StandardCharsets.UTF_8).length;
+            }
+            int pos = align(BATCH_HEADER + names);
+            for (int k = 0; k < c; k++) {
+                pos += align(rows * schema.get(k).type.size);
+            }
+            final ByteBuffer d = batch.duplicate();
+            d.position(pos).limit(pos + rows * schema.get(c).type.size);
+            return d.slice().order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+}
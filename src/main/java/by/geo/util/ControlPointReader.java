@@ -0,0 +1,180 @@
+package by.geo.util;
+
+import by.geo.point.ControlPointSet;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Чтение контрольных точек из текстового файла в набор столбцов.
+ *
+ * <p>Каждая непустая строка файла - точка; поля разделяются пробелами
+ * или табуляцией, десятичный разделитель - точка или запятая. Номера
+ * столбцов задаются с нуля; по умолчанию: 0 - имя точки (не читается),
+ * 1 - широта, 2 - долгота, 3 - нормальная высота, 4 - геодезическая
+ * высота, 5 и 6 - их ошибки. Файл отображается в память и разбирается
+ * частями параллельно.</p>
+ *
+ * <p>Точки, лежащие в пределах допуска от точки выше по файлу,
+ * отбрасываются: совпадающие точки делают ковариационную матрицу
+ * вырожденной.</p>
+ */
+public final class ControlPointReader {
+
+    private static final int LAT = 0, LON = 1, NORMAL = 2, GEODETIC = 3,
+            NORMAL_ERROR = 4, GEODETIC_ERROR = 5;
+
+    @NotNull
+    private final int[] columns = {1, 2, 3, 4, 5, 6};
+    private double tolerance = 0.001;
+
+    public ControlPointReader setLatColumn(final int column) {
+        return column(LAT, column, false);
+    }
+
+    public ControlPointReader setLonColumn(final int column) {
+        return column(LON, column, false);
+    }
+
+    public ControlPointReader setNormalHeightColumn(final int column) {
+        return column(NORMAL, column, false);
+    }
+
+    public ControlPointReader setGeodeticHeightColumn(final int column) {
+        return column(GEODETIC, column, false);
+    }
+
+    /**
+     * @param column номер столбца или -1, если ошибок в файле нет
+     */
+    public ControlPointReader setNormalHeightErrorColumn(final int column) {
+        return column(NORMAL_ERROR, column, true);
+    }
+
+    /**
+     * @param column номер столбца или -1, если ошибок в файле нет
+     */
+    public ControlPointReader setGeodeticHeightErrorColumn(final int column) {
+        return column(GEODETIC_ERROR, column, true);
+    }
+
+    /**
+     * @param tolerance допуск совпадения точек в метрах;
+     *                  0 - повторы не отбрасываются
+     */
+    public ControlPointReader setDuplicateTolerance(final double tolerance) {
+        if (!(tolerance >= 0)) {
+            throw new IllegalArgumentException("tolerance is not valid");
+        }
+        this.tolerance = tolerance;
+        return this;
+    }
+
+    @NotNull
+    private ControlPointReader column(final int slot, final int column, final boolean optional) {
+        if (column < (optional ? -1 : 0)) {
+            throw new IllegalArgumentException("column is not valid");
+        }
+        columns[slot] = column;
+        return this;
+    }
+
+    /**
+     * Прочитать контрольные точки.
+     *
+     * @param file файл точек
+     * @return набор точек в порядке файла без повторов
+     * @throws IOException если файл не удалось прочитать
+     *                     или в строке нет нужного числа
+     */
+    @NotNull
+    public ControlPointSet read(@NotNull final String file) throws IOException {
+        int max = 0;
+        for (int c : columns) {
+            max = Math.max(max, c);
+        }
+        // номер слота для каждого столбца строки
+        final int[] slots = new int[max + 1];
+        Arrays.fill(slots, -1);
+        for (int s = 0; s < columns.length; s++) {
+            if (columns[s] >= 0) {
+                slots[columns[s]] = s;
+            }
+        }
+
+        final List<Part> parts = TextChunks.parse(Paths.get(file), buf -> {
+            final TextScanner s = new TextScanner(buf);
+            final Part part = new Part(buf.limit() / 64 + 1);
+            final double[] row = new double[columns.length];
+            while (s.nextLine()) {
+                try {
+                    for (int c = 0; c < slots.length; c++) {
+                        if (slots[c] < 0) {
+                            if (!s.skipField()) {
+                                throw new NumberFormatException("field is missing");
+                            }
+                        } else {
+                            row[slots[c]] = s.nextDouble();
+                        }
+                    }
+                } catch (NumberFormatException e) {
+                    part.error = e;
+                    break;
+                }
+                part.add(row);
+            }
+            return part;
+        });
+
+        int n = 0;
+        for (Part part : parts) {
+            if (part.error != null) {
+                throw new IOException(file + ": point " + (n + part.size + 1) + ": "
+                        + part.error.getMessage(), part.error);
+            }
+            n += part.size;
+        }
+        final double[][] cols = new double[columns.length][n];
+        int p = 0;
+        for (Part part : parts) {
+            for (int s = 0; s < cols.length; s++) {
+                System.arraycopy(part.cols[s], 0, cols[s], p, part.size);
+            }
+            p += part.size;
+        }
+
+        final ControlPointSet set = new ControlPointSet(cols[LAT], cols[LON], cols[NORMAL],
+                cols[GEODETIC], cols[NORMAL_ERROR], cols[GEODETIC_ERROR]);
+        return tolerance > 0 ? set.without(set.duplicates(tolerance)) : set;
+    }
+
+    /**
+     * Столбцы точек части файла.
+     */
+    private static final class Part {
+
+        @NotNull
+        private final double[][] cols;
+        private int size;
+        private NumberFormatException error;
+
+        Part(final int capacity) {
+            cols = new double[6][capacity];
+        }
+
+        void add(@NotNull final double[] row) {
+            if (size == cols[0].length) {
+                for (int s = 0; s < cols.length; s++) {
+                    cols[s] = Arrays.copyOf(cols[s], size * 2);
+                }
+            }
+            for (int s = 0; s < cols.length; s++) {
+                cols[s][size] = row[s];
+            }
+            size++;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package by.geo.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Форматирование чисел с фиксированным числом знаков после точки
+ * без создания объектов.
+ *
+ * <p>Результат совпадает с {@code String.format(Locale.ROOT, "%.nf", v)}:
+ * округление половины от нуля по десятичной записи числа. Число
+ * масштабируется до целого {@code long}; точный, но затратный путь
+ * через {@link BigDecimal} используется, только если масштабированное
+ * значение близко к половине единицы или слишком велико.</p>
+ */
+final class FixedDecimal {
+
+    private static final int MAX_DIGITS = 15;
+    private static final double LIMIT = 1E15;
+    private static final double TIE = 1E-6;
+
+    private static final long[] POW10 = new long[MAX_DIGITS + 1];
+
+    static {
+        POW10[0] = 1;
+        for (int n = 1; n < POW10.length; n++) {
+            POW10[n] = POW10[n - 1] * 10;
+        }
+    }
+
+    private FixedDecimal() {
+    }
+
+    /**
+     * Записать число.
+     *
+     * @param sink   буфер
+     * @param v      число
+     * @param digits число знаков после точки, от 0 до {@value #MAX_DIGITS}
+     */
+    static void append(@NotNull final ByteSink sink, final double v, final int digits) {
+        if (digits < 0 || digits > MAX_DIGITS) {
+            throw new IllegalArgumentException("digits is not valid");
+        }
+        if (Double.isNaN(v)) {
+            sink.put("NaN");
+            return;
+        }
+        if (Double.isInfinite(v)) {
+            sink.put(v > 0 ? "Infinity" : "-Infinity");
+            return;
+        }
+        final boolean negative = Double.doubleToRawLongBits(v) < 0;
+        final double scaled = Math.abs(v) * POW10[digits];
+        final double frac = scaled - Math.floor(scaled);
+
+        if (scaled >= LIMIT || Math.abs(frac - 0.5) < Math.max(TIE, 4 * Math.ulp(scaled))) {
+            exact(sink, v, digits, negative);
+            return;
+        }
+        final long m = Math.round(scaled);
+        final long intPart = m / POW10[digits];
+        long fracPart = m % POW10[digits];
+
+        sink.ensure(2 + 16 + digits);
+        if (negative) {
+            sink.putUnchecked((byte) '-');
+        }
+        putLong(sink, intPart);
+        if (digits > 0) {
+            sink.putUnchecked((byte) '.');
+            for (int n = digits - 1; n >= 0; n--) {
+                final long p = POW10[n];
+                sink.putUnchecked((byte) ('0' + fracPart / p));
+                fracPart %= p;
+            }
+        }
+    }
+
+    private static void putLong(@NotNull final ByteSink sink, final long x) {
+        int n = 0;
+        while (n + 1 < POW10.length && x >= POW10[n + 1]) {
+            n++;
+        }
+        long r = x;
+        for (; n >= 0; n--) {
+            sink.putUnchecked((byte) ('0' + r / POW10[n]));
+            r %= POW10[n];
+        }
+    }
+
+    private static void exact(@NotNull final ByteSink sink, final double v, final int digits,
+                              final boolean negative) {
+        final String s = new BigDecimal(Double.toString(Math.abs(v)))
+                .setScale(digits, RoundingMode.HALF_UP).toPlainString();
+        if (negative) {
+            sink.put((byte) '-');
+        }
+        sink.put(s);
+    }
+}
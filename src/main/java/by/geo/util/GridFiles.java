@@ -0,0 +1,63 @@
+package by.geo.util;
+
+import by.geo.point.Grid;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+
+/**
+ * Общие операции чтения и записи гридов в двоичных форматах.
+ */
+final class GridFiles {
+
+    /**
+     * Наибольший размер отображаемой в память области в байтах.
+     */
+    static final int MAP = 64 << 20;
+
+    private GridFiles() {
+    }
+
+    /**
+     * Создать грид по геометрии из заголовка файла.
+     *
+     * @param lat0 минимальная широта
+     * @param lon0 минимальная долгота
+     * @param dlat шаг по широте
+     * @param dlon шаг по долготе
+     * @param rows число строк
+     * @param cols число столбцов
+     * @return грид
+     * @throws IOException если геометрия неверна или грид с такими
+     *                     границами и шагами имеет другой размер
+     */
+    @NotNull
+    static Grid grid(final double lat0, final double lon0, final double dlat, final double dlon,
+                     final int rows, final int cols) throws IOException {
+        if (rows < 1 || cols < 1 || !(dlat > 0) || !(dlon > 0)) {
+            throw new IOException("grid header is not valid");
+        }
+        final Grid grid = Grid.builder()
+                .setLatMin(lat0)
+                .setLonMin(lon0)
+                .setLatMax(lat0 + dlat * (rows - 1))
+                .setLonMax(lon0 + dlon * (cols - 1))
+                .setDeltaLat(dlat)
+                .setDeltaLon(dlon)
+                .build();
+        if (grid.rowNumber() != rows || grid.colNumber() != cols) {
+            throw new IOException("grid geometry does not match header size "
+                    + rows + "x" + cols);
+        }
+        return grid;
+    }
+
+    /**
+     * Число строк грида в одной отображаемой области.
+     *
+     * @param rowBytes размер строки в байтах
+     */
+    static int rowsPerMap(final long rowBytes) {
+        return (int) Math.max(1, MAP / rowBytes);
+    }
+}
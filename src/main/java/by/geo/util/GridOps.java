@@ -0,0 +1,219 @@
+package by.geo.util;
+
+import by.geo.math.GridInterpolator;
+import by.geo.point.Grid;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Поэлементные операции над гридами и передискретизация.
+ *
+ * <p>Выражение вычисляется за один проход по строкам без промежуточных
+ * гридов: строки источников читаются в рабочие массивы потока,
+ * результат записывается строкой. Диапазоны строк обрабатываются
+ * параллельно в общем пуле {@link ForkJoinPool}. Результат можно
+ * записывать в один из гридов-источников.</p>
+ */
+public final class GridOps {
+
+    /**
+     * Число строк, ниже которого диапазон не делится.
+     */
+    private static final int ROWS = 16;
+
+    private GridOps() {
+    }
+
+    /**
+     * Линейная комбинация гридов:
+     * {@code target = c0 + k[0] * grids[0] + k[1] * grids[1] + ...}.
+     *
+     * <p>Например, {@code a + b - c * k} записывается как
+     * {@code linear(out, 0, new double[]{1, 1, -k}, a, b, c)}.</p>
+     *
+     * @param target грид результата
+     * @param c0     свободный член
+     * @param k      коэффициенты
+     * @param grids  гриды-слагаемые
+     * @throws IllegalArgumentException если число коэффициентов не равно числу
+     *                                  гридов или размеры гридов различаются
+     */
+    public static void linear(@NotNull final Grid target, final double c0,
+                              @NotNull final double[] k, @NotNull final Grid... grids) {
+        if (k.length != grids.length) {
+            throw new IllegalArgumentException("coefficients do not match grids");
+        }
+        testSize(target, grids);
+
+        final int cols = target.colNumber();
+        forRows(target.rowNumber(), () -> {
+            final double[] in = new double[cols];
+            final double[] out = new double[cols];
+            return i -> {
+                Arrays.fill(out, c0);
+                for (int n = 0; n < grids.length; n++) {
+                    grids[n].getRow(i, in);
+                    final double kn = k[n];
+                    for (int j = 0; j < cols; j++) {
+                        out[j] += kn * in[j];
+                    }
+                }
+                target.setRow(i, out);
+            };
+        });
+    }
+
+    /**
+     * Поэлементное преобразование: {@code target = op(src)}.
+     *
+     * @param target грид результата
+     * @param op     функция
+     * @param src    грид-источник
+     * @throws IllegalArgumentException если размеры гридов различаются
+     */
+    public static void map(@NotNull final Grid target, @NotNull final DoubleUnaryOperator op,
+                           @NotNull final Grid src) {
+        testSize(target, src);
+
+        final int cols = target.colNumber();
+        forRows(target.rowNumber(), () -> {
+            final double[] row = new double[cols];
+            return i -> {
+                src.getRow(i, row);
+                for (int j = 0; j < cols; j++) {
+                    row[j] = op.applyAsDouble(row[j]);
+                }
+                target.setRow(i, row);
+            };
+        });
+    }
+
+    /**
+     * Поэлементная функция двух гридов: {@code target = op(a, b)}.
+     *
+     * @param target грид результата
+     * @param op     функция
+     * @param a      первый грид
+     * @param b      второй грид
+     * @throws IllegalArgumentException если размеры гридов различаются
+     */
+    public static void zip(@NotNull final Grid target, @NotNull final DoubleBinaryOperator op,
+                           @NotNull final Grid a, @NotNull final Grid b) {
+        testSize(target, a, b);
+
+        final int cols = target.colNumber();
+        forRows(target.rowNumber(), () -> {
+            final double[] ra = new double[cols];
+            final double[] rb = new double[cols];
+            return i -> {
+                a.getRow(i, ra);
+                b.getRow(i, rb);
+                for (int j = 0; j < cols; j++) {
+                    ra[j] = op.applyAsDouble(ra[j], rb[j]);
+                }
+                target.setRow(i, ra);
+            };
+        });
+    }
+
+    /**
+     * Передискретизация: значения узлов {@code dst} интерполируются
+     * по {@code src}. Шаг и границы гридов могут различаться;
+     * узлы {@code dst} вне границ {@code src} получают {@code NaN}.
+     *
+     * @param src  грид-источник
+     * @param dst  грид результата
+     * @param type тип интерполяции
+     */
+    public static void resample(@NotNull final Grid src, @NotNull final Grid dst,
+                                @NotNull final GridInterpolator.Type type) {
+        final GridInterpolator interpolator = new GridInterpolator(src, type);
+
+        final int cols = dst.colNumber();
+        forRows(dst.rowNumber(), () -> {
+            final double[] row = new double[cols];
+            final int[] idx = new int[cols];
+            return i -> {
+                Arrays.fill(row, Double.NaN);
+
+                final double B = dst.latDeg(i);
+                if (B >= src.latMin() && B <= src.latMax()) {
+                    int n = 0;
+                    for (int j = 0; j < cols; j++) {
+                        final double L = dst.lonDeg(j);
+                        if (L >= src.lonMin() && L <= src.lonMax()) {
+                            idx[n++] = j;
+                        }
+                    }
+                    final double[] lat = new double[n];
+                    final double[] lon = new double[n];
+                    final double[] out = new double[n];
+                    Arrays.fill(lat, B);
+                    for (int p = 0; p < n; p++) {
+                        lon[p] = dst.lonDeg(idx[p]);
+                    }
+                    interpolator.interpolate(lat, lon, out);
+                    for (int p = 0; p < n; p++) {
+                        row[idx[p]] = out[p];
+                    }
+                }
+                dst.setRow(i, row);
+            };
+        });
+    }
+
+    private static void testSize(@NotNull final Grid target, @NotNull final Grid... grids) {
+        for (Grid g : grids) {
+            if (g.rowNumber() != target.rowNumber() || g.colNumber() != target.colNumber()) {
+                throw new IllegalArgumentException("grids size does not match");
+            }
+        }
+    }
+
+    /**
+     * Обработка строк диапазонами в общем пуле.
+     *
+     * @param rows    число строк
+     * @param workers фабрика обработчиков строк; обработчик создается
+     *                на каждый диапазон, поэтому его рабочие массивы
+     *                не разделяются между потоками
+     */
+    private static void forRows(final int rows, @NotNull final Supplier<IntConsumer> workers) {
+        ForkJoinPool.commonPool().invoke(new RowTask(0, rows, workers));
+    }
+
+    private static final class RowTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int from, to;
+        @NotNull
+        private final Supplier<IntConsumer> workers;
+
+        RowTask(final int from, final int to, @NotNull final Supplier<IntConsumer> workers) {
+            this.from = from;
+            this.to = to;
+            this.workers = workers;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= ROWS) {
+                final IntConsumer worker = workers.get();
+                for (int i = from; i < to; i++) {
+                    worker.accept(i);
+                }
+            } else {
+                final int mid = (from + to) >>> 1;
+                invokeAll(new RowTask(from, mid, workers), new RowTask(mid, to, workers));
+            }
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package by.geo.util;
+
+import by.geo.math.GridInterpolator;
+import by.geo.point.Grid;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Пирамида гридов убывающего разрешения.
+ *
+ * <p>Уровень 0 - исходный грид; каждый следующий уровень имеет вдвое
+ * больший шаг, и его узел {@code (i, j)} совпадает с узлом
+ * {@code (2i, 2j)} предыдущего уровня. Значение узла получается
+ * сглаживанием окрестности 3x3 предыдущего уровня, что подавляет
+ * наложение частот при прореживании. Узлы уровня - подмножество
+ * узлов предыдущего: уровень из {@code n} строк дает {@code (n + 1) / 2}
+ * строк, и при четном {@code n} последняя строка предыдущего уровня
+ * в следующий не попадает; то же для столбцов. Область уровня поэтому
+ * не выходит за область предыдущего и может отставать от нее
+ * на один шаг предыдущего уровня у северной и восточной границ.</p>
+ *
+ * <p>Грубые уровни позволяют выполнять обзорные расчеты и проверки
+ * без обращения к полному гриду.</p>
+ */
+public final class GridPyramid {
+
+    @NotNull
+    private final List<Grid> levels;
+
+    /**
+     * Построить пирамиду.
+     *
+     * <p>Построение останавливается раньше, если у очередного уровня
+     * осталось бы меньше двух строк или столбцов, то есть как только
+     * одну из осей уже нельзя проредить вдвое.</p>
+     *
+     * @param base   исходный грид
+     * @param levels наибольшее число уровней, кроме исходного
+     * @param filter сглаживающий фильтр
+     * @throws IllegalArgumentException если {@code levels < 0}
+     */
+    public GridPyramid(@NotNull final Grid base, final int levels, @NotNull final Filter filter) {
+        if (levels < 0) {
+            throw new IllegalArgumentException("levels is not valid");
+        }
+        final List<Grid> list = new ArrayList<>(levels + 1);
+        list.add(base);
+
+        Grid prev = base;
+        for (int l = 0; l < levels; l++) {
+            final int rows = (prev.rowNumber() + 1) / 2;
+            final int cols = (prev.colNumber() + 1) / 2;
+            if (rows < 2 || cols < 2) {
+                break;
+            }
+            prev = reduce(prev, rows, cols, filter);
+            list.add(prev);
+        }
+        this.levels = Collections.unmodifiableList(list);
+    }
+
+    @NotNull
+    private static Grid reduce(@NotNull final Grid src, final int rows, final int cols,
+                               @NotNull final Filter filter) {
+        final double dlat = src.deltaLat() * 2;
+        final double dlon = src.deltaLon() * 2;
+
+        final Grid dst = Grid.builder()
+                .setLatMin(src.latMin())
+                .setLonMin(src.lonMin())
+                .setLatMax(src.latMin() + dlat * (rows - 1))
+                .setLonMax(src.lonMin() + dlon * (cols - 1))
+                .setDeltaLat(dlat)
+                .setDeltaLon(dlon)
+                .build();
+
+        final double[] w = filter.weights;
+        final int srcRows = src.rowNumber();
+        final int srcCols = src.colNumber();
+
+        if (dst.rowNumber() != rows || dst.colNumber() != cols) {
+            throw new IllegalStateException("level size is not valid");
+        }
+
+        IntStream.range(0, rows).parallel().forEach(i -> {
+            final int ci = 2 * i;
+            for (int j = 0; j < cols; j++) {
+                final int cj = 2 * j;
+                double sum = 0.0, norm = 0.0;
+                for (int di = -1; di <= 1; di++) {
+                    final int si = ci + di;
+                    if (si < 0 || si >= srcRows) continue;
+                    for (int dj = -1; dj <= 1; dj++) {
+                        final int sj = cj + dj;
+                        if (sj < 0 || sj >= srcCols) continue;
+                        final double k = w[di + 1] * w[dj + 1];
+                        sum += k * src.getValue(si, sj);
+                        norm += k;
+                    }
+                }
+                dst.setValue(i, j, sum / norm);
+            }
+        });
+        return dst;
+    }
+
+    /**
+     * @return число уровней, включая исходный
+     */
+    public int size() {
+        return levels.size();
+    }
+
+    /**
+     * Уровень пирамиды.
+     *
+     * @param level номер уровня, 0 - исходный грид
+     * @return грид уровня
+     * @throws IndexOutOfBoundsException если уровня нет
+     */
+    @NotNull
+    public Grid level(final int level) {
+        return levels.get(level);
+    }
+
+    /**
+     * Самый грубый уровень, шаг которого не превышает заданного.
+     *
+     * @param resolution допустимый шаг в градусах
+     * @return номер уровня; 0, если даже исходный грид грубее
+     */
+    public int levelFor(final double resolution) {
+        int level = 0;
+        for (int l = 1; l < levels.size(); l++) {
+            final Grid g = levels.get(l);
+            if (Math.max(g.deltaLat(), g.deltaLon()) <= resolution) {
+                level = l;
+            }
+        }
+        return level;
+    }
+
+    /**
+     * Интерполятор по уровню, подобранному по допустимому шагу.
+     *
+     * @param resolution допустимый шаг в градусах
+     * @param type       тип интерполяции
+     * @return интерполятор
+     */
+    @NotNull
+    public GridInterpolator interpolator(final double resolution,
+                                         @NotNull final GridInterpolator.Type type) {
+        return new GridInterpolator(level(levelFor(resolution)), type);
+    }
+
+    /**
+     * Сглаживающий фильтр окрестности 3x3.
+     */
+    public enum Filter {
+        /**
+         * Среднее по окрестности 3x3.
+         */
+        average(1, 1, 1),
+
+        /**
+         * Биномиальный фильтр [1 2 1] / 4 по каждой оси:
+         * подавляет частоты выше частоты Найквиста грубого уровня.
+         */
+        binomial(1, 2, 1);
+
+        @NotNull
+        private final double[] weights;
+
+        Filter(final double... weights) {
+            this.weights = weights;
+        }
+    }
+}
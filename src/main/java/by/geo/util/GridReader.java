@@ -3,11 +3,19 @@ package by.geo.util;
 import by.geo.point.Grid;
 import org.jetbrains.annotations.NotNull;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
 
+/**
+ * Чтение гридов из текстовых файлов.
+ *
+ * <p>Файл отображается в память и разбирается частями параллельно;
+ * значение узла определяется номером непустой строки. Строки после
+ * последнего узла грида не проверяются.</p>
+ */
 public final class GridReader {
 
     private GridReader() {
@@ -16,38 +24,101 @@ public final class GridReader {
     /**
      * Чтение грида из текстового файла BLH.
      *
+     * <p>Строки файла идут от южной строки грида к северной.</p>
+     *
      * @param grid грид
      * @param in   файл с координатами BLH
+     * @throws IOException если файл не удалось прочитать, узлов
+     *                     недостаточно или значение узла не является числом
      */
     public static void makeGridAsc(@NotNull final Grid grid, @NotNull final String in)
             throws IOException {
-        try (BufferedReader r = Files.newBufferedReader(Paths.get(in))) {
-            for (int i = 0; i < grid.rowNumber(); i++) {
-                for (int j = 0; j < grid.colNumber(); j++) {
-                    final String[] s = r.readLine().trim().replaceAll(",", ".")
-                            .split("\\s+");
-                    grid.setValue(i, j, Double.parseDouble(s[2]));
-                }
-            }
-        }
+        read(grid, in, true);
     }
 
     /**
      * Чтение грида из текстового файла BLH.
      *
+     * <p>Строки файла идут от северной строки грида к южной.</p>
+     *
      * @param grid грид
      * @param in   файл с координатами BLH
+     * @throws IOException если файл не удалось прочитать, узлов
+     *                     недостаточно или значение узла не является числом
      */
     public static void makeGridDesc(@NotNull final Grid grid, @NotNull final String in)
             throws IOException {
-        try (BufferedReader r = Files.newBufferedReader(Paths.get(in))) {
-            for (int i = grid.rowNumber() - 1; i >= 0; i--) {
-                for (int j = 0; j < grid.colNumber(); j++) {
-                    final String[] s = r.readLine().trim().replaceAll(",", ".")
-                            .split("\\s+");
-                    grid.setValue(i, j, Double.parseDouble(s[2]));
+        read(grid, in, false);
+    }
+
+    private static void read(@NotNull final Grid grid, @NotNull final String in,
+                             final boolean asc) throws IOException {
+        final int rows = grid.rowNumber();
+        final int cols = grid.colNumber();
+        final long nodes = (long) rows * cols;
+
+        final List<Part> parts = TextChunks.parse(Paths.get(in), buf -> {
+            final TextScanner s = new TextScanner(buf);
+            final Part part = new Part(buf.limit() / 32 + 1);
+            while (s.nextLine()) {
+                try {
+                    s.skipField();
+                    s.skipField();
+                    part.add(s.nextDouble());
+                } catch (NumberFormatException e) {
+                    part.error = e;
+                    break;
                 }
             }
+            return part;
+        });
+
+        // номер первой строки каждой части
+        final long[] first = new long[parts.size()];
+        long count = 0;
+        for (int n = 0; n < parts.size(); n++) {
+            final Part part = parts.get(n);
+            first[n] = count;
+            if (part.error != null && count + part.size < nodes) {
+                throw new IOException(in + ": node " + (count + part.size + 1) + ": "
+                        + part.error.getMessage(), part.error);
+            }
+            count += part.size;
+        }
+        if (count < nodes) {
+            throw new IOException(in + ": " + count + " nodes of " + nodes);
+        }
+
+        IntStream.range(0, parts.size()).parallel().forEach(n -> {
+            final Part part = parts.get(n);
+            final int size = (int) Math.min(part.size, Math.max(0, nodes - first[n]));
+            for (int p = 0; p < size; p++) {
+                final long k = first[n] + p;
+                final int r = (int) (k / cols);
+                grid.setValue(asc ? r : rows - 1 - r, (int) (k % cols), part.values[p]);
+            }
+        });
+    }
+
+    /**
+     * Значения узлов части файла.
+     */
+    private static final class Part {
+
+        @NotNull
+        private double[] values;
+        private int size;
+        private NumberFormatException error;
+
+        Part(final int capacity) {
+            values = new double[capacity];
+        }
+
+        void add(final double v) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = v;
         }
     }
 }
@@ -4,8 +4,12 @@ import by.geo.point.Grid;
 import by.geo.point.Node;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.ArrayList;
+import java.util.AbstractCollection;
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
 
 /**
  * Преобразователь грида в коллекцию узлов.
@@ -25,26 +29,77 @@ public final class GridToNodes {
     /**
      * Получить коллекцию узлов.
      *
+     * <p>Коллекция ленивая: узлы создаются при обходе и не хранятся,
+     * параллельный поток делится по строкам грида. Для обхода
+     * без создания объектов используйте {@link Grid#nodes()}.</p>
+     *
      * @return коллекция узлов
      */
     @NotNull
     public Collection<Node> knots() {
+        return new AbstractCollection<Node>() {
+            @Override
+            @NotNull
+            public Iterator<Node> iterator() {
+                return Spliterators.iterator(spliterator());
+            }
 
-        final double lon0 = grid.lonMin();
-        final double lat0 = grid.latMin();
+            @Override
+            @NotNull
+            public Spliterator<Node> spliterator() {
+                return new NodeSpliterator(grid.nodes().spliterator());
+            }
 
-        final double dlon = grid.deltaLon();
-        final double dlat = grid.deltaLat();
+            @Override
+            public int size() {
+                return (int) Math.min(Integer.MAX_VALUE, (long) grid.rowNumber() * grid.colNumber());
+            }
+        };
+    }
 
-        final Collection<Node> nodes = new ArrayList<>();
+    @NotNull
+    private Node node(final long k) {
+        final int i = (int) (k / grid.colNumber());
+        final int j = (int) (k % grid.colNumber());
+        return new Node(grid.latDeg(i), grid.lonDeg(j), i, j);
+    }
 
-        for (int i = 0; i < grid.rowNumber(); i++) {
-            for (int j = 0; j < grid.colNumber(); j++) {
-                nodes.add(new Node(
-                        lat0 + dlat * i, lon0 + dlon * j,
-                        i, j));
-            }
+    /**
+     * Разделитель узлов поверх разделителя номеров узлов.
+     */
+    private final class NodeSpliterator implements Spliterator<Node> {
+
+        @NotNull
+        private final Spliterator.OfLong indices;
+
+        NodeSpliterator(@NotNull final Spliterator.OfLong indices) {
+            this.indices = indices;
+        }
+
+        @Override
+        public boolean tryAdvance(@NotNull final Consumer<? super Node> action) {
+            return indices.tryAdvance((long k) -> action.accept(node(k)));
+        }
+
+        @Override
+        public void forEachRemaining(@NotNull final Consumer<? super Node> action) {
+            indices.forEachRemaining((long k) -> action.accept(node(k)));
+        }
+
+        @Override
+        public Spliterator<Node> trySplit() {
+            final Spliterator.OfLong prefix = indices.trySplit();
+            return prefix == null ? null : new NodeSpliterator(prefix);
+        }
+
+        @Override
+        public long estimateSize() {
+            return indices.estimateSize();
+        }
+
+        @Override
+        public int characteristics() {
+            return indices.characteristics();
         }
-        return nodes;
     }
 }
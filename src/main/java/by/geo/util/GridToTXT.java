@@ -4,15 +4,35 @@ import by.geo.point.Grid;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.IOException;
-import java.io.Writer;
-import java.nio.file.Files;
+import java.nio.channels.FileChannel;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Преобразователь грида в текстовый формат.
+ *
+ * <p>Строки грида делятся на блоки, которые форматируются параллельно
+ * в общем пуле {@link ForkJoinPool} в переиспользуемые байтовые буферы
+ * и записываются в файл по порядку. Числа форматируются без создания
+ * объектов; десятичный разделитель - точка независимо от локали.</p>
  */
 public final class GridToTXT {
 
+    /**
+     * Примерное число узлов в блоке.
+     */
+    private static final int BLOCK_NODES = 1 << 16;
+
+    private static final int LON_DIGITS = 12;
+    private static final int LAT_DIGITS = 12;
+    private static final int VALUE_DIGITS = 5;
+
     @NotNull
     private final Grid grid;
 
@@ -26,34 +46,82 @@ public final class GridToTXT {
     /**
      * Запись грида в тектовый файл в формате LBV (долгота широта значение).
      *
+     * <p>Строки файла идут от северной строки грида к южной.</p>
+     *
      * @param txtFile файл для записи
      * @throws IOException
      */
     public void write(@NotNull final String txtFile) throws IOException {
+        final int rows = grid.rowNumber();
+        final int blockRows = Math.max(1, BLOCK_NODES / Math.max(1, grid.colNumber()));
+        final int blocks = (rows + blockRows - 1) / blockRows;
+        final int window = 2 * ForkJoinPool.getCommonPoolParallelism() + 1;
 
-        final double lon0 = grid.lonMin();
-        final double lat0 = grid.latMin();
-
-        final double dlon = grid.deltaLon();
-        final double dlat = grid.deltaLat();
-
-        try (Writer w = Files.newBufferedWriter(Paths.get(txtFile))) {
-            StringBuilder b;
-            for (int i = grid.rowNumber() - 1; i >= 0; i--) {
-                for (int j = 0; j < grid.colNumber(); j++) {
-                    b = new StringBuilder();
-                    b.append(
-                            String.format("%.12f\t", lon0 + dlon * j).replace(
-                                    ",", "."))
-                            .append(String.format("%.12f\t", lat0 + dlat * i)
-                                    .replace(",", "."))
-                            .append(String.format("%.5f\t", grid.getValue(i, j))
-                                    .replace(",", "."))
-                            .append(String.format("%n"));
-
-                    w.write(b.toString());
+        final ConcurrentLinkedQueue<ByteSink> free = new ConcurrentLinkedQueue<>();
+        final Deque<CompletableFuture<ByteSink>> pending = new ArrayDeque<>();
+
+        try (FileChannel ch = FileChannel.open(Paths.get(txtFile), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            int next = 0;
+            for (int b = 0; b < blocks; b++) {
+                while (next < blocks && pending.size() < window) {
+                    // блок b содержит строки от top до bottom включительно, по убыванию
+                    final int top = rows - 1 - next * blockRows;
+                    final int bottom = Math.max(0, top - blockRows + 1);
+                    pending.add(CompletableFuture.supplyAsync(() -> {
+                        ByteSink sink = free.poll();
+                        if (sink == null) {
+                            sink = new ByteSink(BLOCK_NODES * 48);
+                        }
+                        format(top, bottom, sink);
+                        return sink;
+                    }));
+                    next++;
                 }
+                final ByteSink sink = join(pending.poll());
+                sink.writeTo(ch);
+                free.add(sink);
+            }
+        } finally {
+            for (CompletableFuture<ByteSink> f : pending) {
+                f.cancel(false);
+            }
+        }
+    }
+
+    private void format(final int top, final int bottom, @NotNull final ByteSink sink) {
+        final int cols = grid.colNumber();
+        final String eol = System.lineSeparator();
+        final double[] row = new double[cols];
+
+        for (int i = top; i >= bottom; i--) {
+            grid.getRow(i, row);
+            final double lat = grid.latDeg(i);
+            for (int j = 0; j < cols; j++) {
+                FixedDecimal.append(sink, grid.lonDeg(j), LON_DIGITS);
+                sink.put((byte) '\t');
+                FixedDecimal.append(sink, lat, LAT_DIGITS);
+                sink.put((byte) '\t');
+                FixedDecimal.append(sink, row[j], VALUE_DIGITS);
+                sink.put((byte) '\t');
+                sink.put(eol);
+            }
+        }
+    }
+
+    @NotNull
+    private static ByteSink join(@NotNull final CompletableFuture<ByteSink> f) throws IOException {
+        try {
+            return f.join();
+        } catch (CompletionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
             }
+            throw new IOException(cause);
         }
     }
 }
@@ -0,0 +1,123 @@
+package by.geo.util;
+
+import by.geo.point.Grid;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Чтение и запись гридов в двоичном формате GTX (NOAA VDatum).
+ *
+ * <p>Формат: заголовок из {@value #HEADER} байт (широта и долгота
+ * юго-западного узла, шаги по широте и долготе - {@code double},
+ * число строк и столбцов - {@code int}), затем значения {@code float}
+ * по строкам с юга на север, в строке с запада на восток. Порядок
+ * байт big-endian. Отсутствующие значения кодируются числом
+ * {@value #NODATA} и читаются как {@code NaN}.</p>
+ *
+ * <p>Значения хранятся с одинарной точностью. Данные переносятся
+ * через отображение файла в память построчными блоками.</p>
+ */
+public final class GtxFile {
+
+    static final int HEADER = 40;
+    static final float NODATA = -88.8888f;
+
+    private GtxFile() {
+    }
+
+    /**
+     * Чтение грида из файла GTX.
+     *
+     * @param file файл
+     * @return грид
+     * @throws IOException ошибка чтения или неверный формат
+     */
+    @NotNull
+    public static Grid read(@NotNull final String file) throws IOException {
+        try (FileChannel ch = FileChannel.open(Paths.get(file), StandardOpenOption.READ)) {
+            final ByteBuffer h = ByteBuffer.allocate(HEADER).order(ByteOrder.BIG_ENDIAN);
+            ChannelIO.readFully(ch, h, 0);
+            h.flip();
+            final double lat0 = h.getDouble();
+            final double lon0 = h.getDouble();
+            final double dlat = h.getDouble();
+            final double dlon = h.getDouble();
+            final int rows = h.getInt();
+            final int cols = h.getInt();
+
+            final Grid grid = GridFiles.grid(lat0, lon0, dlat, dlon, rows, cols);
+            final long rowBytes = (long) cols * 4;
+            if (ch.size() != HEADER + rowBytes * rows) {
+                throw new IOException("GTX file size does not match header");
+            }
+            final int step = GridFiles.rowsPerMap(rowBytes);
+            final float[] in = new float[cols];
+            final double[] row = new double[cols];
+
+            for (int i0 = 0; i0 < rows; i0 += step) {
+                final int n = Math.min(step, rows - i0);
+                final FloatBuffer fb = ch.map(FileChannel.MapMode.READ_ONLY,
+                        HEADER + rowBytes * i0, rowBytes * n)
+                        .order(ByteOrder.BIG_ENDIAN).asFloatBuffer();
+                for (int i = i0; i < i0 + n; i++) {
+                    fb.get(in);
+                    for (int j = 0; j < cols; j++) {
+                        row[j] = in[j] == NODATA ? Double.NaN : in[j];
+                    }
+                    grid.setRow(i, row);
+                }
+            }
+            return grid;
+        }
+    }
+
+    /**
+     * Запись грида в файл GTX.
+     *
+     * @param grid грид
+     * @param file файл для записи
+     * @throws IOException ошибка записи
+     */
+    public static void write(@NotNull final Grid grid, @NotNull final String file)
+            throws IOException {
+        final int rows = grid.rowNumber();
+        final int cols = grid.colNumber();
+
+        try (FileChannel ch = FileChannel.open(Paths.get(file), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            final ByteBuffer h = ByteBuffer.allocate(HEADER).order(ByteOrder.BIG_ENDIAN);
+            h.putDouble(grid.latMin()).putDouble(grid.lonMin())
+                    .putDouble(grid.deltaLat()).putDouble(grid.deltaLon())
+                    .putInt(rows).putInt(cols);
+            h.flip();
+            ChannelIO.writeFully(ch, h);
+
+            final long rowBytes = (long) cols * 4;
+            final int step = GridFiles.rowsPerMap(rowBytes);
+            final double[] row = new double[cols];
+            final float[] out = new float[cols];
+
+            for (int i0 = 0; i0 < rows; i0 += step) {
+                final int n = Math.min(step, rows - i0);
+                final FloatBuffer fb = ch.map(FileChannel.MapMode.READ_WRITE,
+                        HEADER + rowBytes * i0, rowBytes * n)
+                        .order(ByteOrder.BIG_ENDIAN).asFloatBuffer();
+                for (int i = i0; i < i0 + n; i++) {
+                    grid.getRow(i, row);
+                    for (int j = 0; j < cols; j++) {
+                        out[j] = Double.isNaN(row[j]) ? NODATA : (float) row[j];
+                    }
+                    fb.put(out);
+                }
+            }
+        }
+    }
+}
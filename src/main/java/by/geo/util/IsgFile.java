@@ -0,0 +1,365 @@
+package by.geo.util;
+
+import by.geo.point.Grid;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Чтение и запись гридов в формате ISG 2.0 (International Service
+ * for the Geoid).
+ *
+ * <p>Файл начинается с текстового заголовка между строками
+ * {@code begin_of_head} и {@code end_of_head}, за которым идут
+ * значения по строкам с севера на юг, в строке с запада на восток.
+ * Координаты - в градусах и относятся к узлам грида.</p>
+ *
+ * <p>Текстовый вариант хранит одну строку грида в строке файла
+ * с {@value #DIGITS} знаками после точки. Двоичный вариант после того же
+ * заголовка хранит значения {@code double} в порядке little-endian
+ * без потери точности и переносится через отображение файла в память.
+ * Отсутствующие значения записываются числом {@code nodata} заголовка
+ * и читаются как {@code NaN}.</p>
+ */
+public final class IsgFile {
+
+    private static final String BEGIN = "begin_of_head";
+    private static final String END = "end_of_head";
+    private static final double NODATA = -9999.0;
+    private static final int DIGITS = 6;
+
+    /**
+     * Наибольший размер заголовка в байтах.
+     */
+    private static final int MAX_HEADER = 1 << 20;
+
+    private IsgFile() {
+    }
+
+    /**
+     * Чтение грида из текстового файла ISG.
+     *
+     * @param file файл
+     * @return грид
+     * @throws IOException ошибка чтения или неверный формат
+     */
+    @NotNull
+    public static Grid read(@NotNull final String file) throws IOException {
+        try (FileChannel ch = FileChannel.open(Paths.get(file), StandardOpenOption.READ)) {
+            final Header h = Header.read(ch);
+            final Grid grid = h.grid();
+            final long size = ch.size() - h.length;
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("ISG text is too large");
+            }
+            final TextScanner s = new TextScanner(
+                    ch.map(FileChannel.MapMode.READ_ONLY, h.length, size));
+
+            final int cols = grid.colNumber();
+            final double[] row = new double[cols];
+            try {
+                for (int r = 0; r < h.rows; r++) {
+                    for (int j = 0; j < cols; j++) {
+                        while (!s.hasField()) {
+                            if (!s.nextLine()) {
+                                throw new IOException("ISG file has "
+                                        + ((long) r * cols + j) + " values of " + (long) h.rows * cols);
+                            }
+                        }
+                        final double v = s.nextDouble();
+                        row[j] = v == h.nodata ? Double.NaN : v;
+                    }
+                    grid.setRow(h.rows - 1 - r, row);
+                }
+            } catch (NumberFormatException e) {
+                throw new IOException(file + ": " + e.getMessage(), e);
+            }
+            return grid;
+        }
+    }
+
+    /**
+     * Чтение грида из двоичного файла ISG.
+     *
+     * @param file файл
+     * @return грид
+     * @throws IOException ошибка чтения или неверный формат
+     */
+    @NotNull
+    public static Grid readBinary(@NotNull final String file) throws IOException {
+        try (FileChannel ch = FileChannel.open(Paths.get(file), StandardOpenOption.READ)) {
+            final Header h = Header.read(ch);
+            final Grid grid = h.grid();
+            final int rows = h.rows;
+            final int cols = h.cols;
+            final long rowBytes = (long) cols * 8;
+            if (ch.size() != h.length + rowBytes * rows) {
+                throw new IOException("ISG file size does not match header");
+            }
+            final int step = GridFiles.rowsPerMap(rowBytes);
+            final double[] row = new double[cols];
+
+            for (int r0 = 0; r0 < rows; r0 += step) {
+                final int n = Math.min(step, rows - r0);
+                final DoubleBuffer db = ch.map(FileChannel.MapMode.READ_ONLY,
+                        h.length + rowBytes * r0, rowBytes * n)
+                        .order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+                for (int r = r0; r < r0 + n; r++) {
+                    db.get(row);
+                    for (int j = 0; j < cols; j++) {
+                        if (row[j] == h.nodata) {
+                            row[j] = Double.NaN;
+                        }
+                    }
+                    grid.setRow(rows - 1 - r, row);
+                }
+            }
+            return grid;
+        }
+    }
+
+    /**
+     * Запись грида в текстовый файл ISG.
+     *
+     * @param grid грид
+     * @param file файл для записи
+     * @throws IOException ошибка записи
+     */
+    public static void write(@NotNull final Grid grid, @NotNull final String file)
+            throws IOException {
+        final int rows = grid.rowNumber();
+        final int cols = grid.colNumber();
+
+        try (FileChannel ch = FileChannel.open(Paths.get(file), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            final ByteSink sink = new ByteSink(GridFiles.MAP / 4);
+            sink.put(header(grid));
+
+            final double[] row = new double[cols];
+            for (int i = rows - 1; i >= 0; i--) {
+                grid.getRow(i, row);
+                for (int j = 0; j < cols; j++) {
+                    if (j > 0) {
+                        sink.put((byte) ' ');
+                    }
+                    FixedDecimal.append(sink, Double.isNaN(row[j]) ? NODATA : row[j], DIGITS);
+                }
+                sink.put((byte) '\n');
+                if (sink.length() >= GridFiles.MAP / 8) {
+                    sink.writeTo(ch);
+                }
+            }
+            sink.writeTo(ch);
+        }
+    }
+
+    /**
+     * Запись грида в двоичный файл ISG.
+     *
+     * @param grid грид
+     * @param file файл для записи
+     * @throws IOException ошибка записи
+     */
+    public static void writeBinary(@NotNull final Grid grid, @NotNull final String file)
+            throws IOException {
+        final int rows = grid.rowNumber();
+        final int cols = grid.colNumber();
+
+        try (FileChannel ch = FileChannel.open(Paths.get(file), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            final ByteBuffer h = ByteBuffer.wrap(header(grid).getBytes(StandardCharsets.US_ASCII));
+            final long length = h.remaining();
+            ChannelIO.writeFully(ch, h);
+
+            final long rowBytes = (long) cols * 8;
+            final int step = GridFiles.rowsPerMap(rowBytes);
+            final double[] row = new double[cols];
+
+            for (int r0 = 0; r0 < rows; r0 += step) {
+                final int n = Math.min(step, rows - r0);
+                final DoubleBuffer db = ch.map(FileChannel.MapMode.READ_WRITE,
+                        length + rowBytes * r0, rowBytes * n)
+                        .order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+                for (int r = r0; r < r0 + n; r++) {
+                    grid.getRow(rows - 1 - r, row);
+                    for (int j = 0; j < cols; j++) {
+                        if (Double.isNaN(row[j])) {
+                            row[j] = NODATA;
+                        }
+                    }
+                    db.put(row);
+                }
+            }
+        }
+    }
+
+    @NotNull
+    private static String header(@NotNull final Grid grid) {
+        final StringBuilder b = new StringBuilder();
+        b.append(BEGIN).append(" ================================================\n");
+        text(b, "model name", "---");
+        text(b, "model year", "---");
+        text(b, "model type", "---");
+        text(b, "data type", "---");
+        text(b, "data units", "meters");
+        text(b, "data format", "grid");
+        text(b, "data ordering", "N-to-S, W-to-E");
+        text(b, "ref ellipsoid", "---");
+        text(b, "ref frame", "---");
+        text(b, "height datum", "---");
+        text(b, "tide system", "---");
+        text(b, "coord type", "geodetic");
+        text(b, "coord units", "deg");
+        text(b, "map projection", "---");
+        text(b, "EPSG code", "---");
+        number(b, "lat min", Double.toString(grid.latMin()));
+        number(b, "lat max", Double.toString(grid.latMax()));
+        number(b, "lon min", Double.toString(grid.lonMin()));
+        number(b, "lon max", Double.toString(grid.lonMax()));
+        number(b, "delta lat", Double.toString(grid.deltaLat()));
+        number(b, "delta lon", Double.toString(grid.deltaLon()));
+        number(b, "nrows", Integer.toString(grid.rowNumber()));
+        number(b, "ncols", Integer.toString(grid.colNumber()));
+        number(b, "nodata", Double.toString(NODATA));
+        number(b, "creation date",
+                LocalDate.now().format(DateTimeFormatter.ofPattern("dd/MM/yyyy", Locale.ROOT)));
+        number(b, "ISG format", "2.0");
+        b.append(END).append(" ==================================================\n");
+        return b.toString();
+    }
+
+    private static void text(@NotNull final StringBuilder b, @NotNull final String key,
+                             @NotNull final String value) {
+        b.append(String.format(Locale.ROOT, "%-15s: %s\n", key, value));
+    }
+
+    private static void number(@NotNull final StringBuilder b, @NotNull final String key,
+                               @NotNull final String value) {
+        b.append(String.format(Locale.ROOT, "%-15s= %s\n", key, value));
+    }
+
+    /**
+     * Заголовок файла ISG.
+     */
+    private static final class Header {
+
+        private final int length;
+        private final double lat0, lat, lon0, lon, dlat, dlon, nodata;
+        private final int rows, cols;
+
+        private Header(final int length, @NotNull final Map<String, String> keys) throws IOException {
+            this.length = length;
+            final String units = keys.get("coord units");
+            if (units != null && !units.equalsIgnoreCase("deg")) {
+                throw new IOException("ISG coord units are not supported: " + units);
+            }
+            final String ordering = keys.get("data ordering");
+            if (ordering != null && !ordering.replace(" ", "").equalsIgnoreCase("N-to-S,W-to-E")) {
+                throw new IOException("ISG data ordering is not supported: " + ordering);
+            }
+            final String format = keys.get("data format");
+            if (format != null && !format.equalsIgnoreCase("grid")) {
+                throw new IOException("ISG data format is not supported: " + format);
+            }
+            lat0 = number(keys, "lat min");
+            lat = number(keys, "lat max");
+            lon0 = number(keys, "lon min");
+            lon = number(keys, "lon max");
+            dlat = number(keys, "delta lat");
+            dlon = number(keys, "delta lon");
+            rows = (int) number(keys, "nrows");
+            cols = (int) number(keys, "ncols");
+            nodata = keys.containsKey("nodata") ? number(keys, "nodata") : Double.NaN;
+        }
+
+        @NotNull
+        private Grid grid() throws IOException {
+            final Grid grid = GridFiles.grid(lat0, lon0, dlat, dlon, rows, cols);
+            final double eps = 1e-6 * Math.min(dlat, dlon);
+            if (Math.abs(grid.latMax() - lat) > eps || Math.abs(grid.lonMax() - lon) > eps) {
+                throw new IOException("ISG bounds do not match steps and size");
+            }
+            return grid;
+        }
+
+        private static double number(@NotNull final Map<String, String> keys,
+                                     @NotNull final String key) throws IOException {
+            final String v = keys.get(key);
+            if (v == null) {
+                throw new IOException("ISG header has no " + key);
+            }
+            try {
+                return Double.parseDouble(v.replace(',', '.'));
+            } catch (NumberFormatException e) {
+                throw new IOException("ISG header " + key + " is not valid: " + v, e);
+            }
+        }
+
+        /**
+         * Чтение заголовка: строки до {@code end_of_head} включительно.
+         */
+        @NotNull
+        static Header read(@NotNull final FileChannel ch) throws IOException {
+            final ByteArrayOutputStream text = new ByteArrayOutputStream();
+            final ByteBuffer buf = ByteBuffer.allocate(8192);
+            final Map<String, String> keys = new HashMap<>();
+            boolean inHead = false;
+            long pos = 0;
+            int lineStart = 0;
+
+            while (pos < MAX_HEADER) {
+                buf.clear();
+                final int n = ch.read(buf, pos);
+                if (n < 0) {
+                    break;
+                }
+                text.write(buf.array(), 0, n);
+                pos += n;
+
+                final byte[] b = text.toByteArray();
+                for (int k = lineStart; k < b.length; k++) {
+                    if (b[k] != '\n') continue;
+                    final String line = new String(b, lineStart, k - lineStart,
+                            StandardCharsets.ISO_8859_1).trim();
+                    lineStart = k + 1;
+                    if (line.startsWith(END)) {
+                        return new Header(lineStart, keys);
+                    }
+                    if (line.startsWith(BEGIN)) {
+                        inHead = true;
+                        continue;
+                    }
+                    final int sep = separator(line);
+                    if (inHead && sep > 0) {
+                        keys.put(line.substring(0, sep).trim().replaceAll("\\s+", " ")
+                                        .toLowerCase(Locale.ROOT),
+                                line.substring(sep + 1).trim());
+                    }
+                }
+            }
+            throw new IOException("ISG header has no " + END);
+        }
+
+        private static int separator(@NotNull final String line) {
+            final int colon = line.indexOf(':');
+            final int eq = line.indexOf('=');
+            if (colon < 0) return eq;
+            if (eq < 0) return colon;
+            return Math.min(colon, eq);
+        }
+    }
+}
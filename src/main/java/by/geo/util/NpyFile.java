@@ -0,0 +1,323 @@
+package by.geo.util;
+
+import by.geo.point.Grid;
+import by.geo.point.GridBuilder;
+import by.geo.point.PrognosisNode;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Обмен данными с NumPy в форматах .npy и .npz.
+ *
+ * <p>Грид записывается двумерным массивом {@code (rowNumber, colNumber)}
+ * в порядке C: строка массива {@code i} - строка грида {@code i},
+ * то есть первая строка массива южная. Значения хранятся в порядке
+ * little-endian и переносятся через отображение файла в память
+ * построчными блоками. Чтение .npy не копирует данные: грид строится
+ * поверх отображения файла.</p>
+ *
+ * <p>Результаты коллокации записываются архивом .npz из одномерных
+ * массивов без сжатия, который читается {@code numpy.load}.</p>
+ */
+public final class NpyFile {
+
+    private static final byte[] MAGIC = {(byte) 0x93, 'N', 'U', 'M', 'P', 'Y'};
+    private static final int ALIGN = 64;
+
+    private static final Pattern DESCR = Pattern.compile("'descr'\\s*:\\s*'([<>|=]?)([a-z])(\\d+)'");
+    private static final Pattern FORTRAN = Pattern.compile("'fortran_order'\\s*:\\s*(True|False)");
+    private static final Pattern SHAPE = Pattern.compile("'shape'\\s*:\\s*\\(([^)]*)\\)");
+
+    private NpyFile() {
+    }
+
+    /**
+     * Запись грида в файл .npy со значениями {@code float64}.
+     *
+     * @param grid грид
+     * @param file файл для записи
+     * @throws IOException ошибка записи
+     */
+    public static void write(@NotNull final Grid grid, @NotNull final String file)
+            throws IOException {
+        write(grid, file, Type.float64);
+    }
+
+    /**
+     * Запись грида в файл .npy.
+     *
+     * @param grid грид
+     * @param file файл для записи
+     * @param type тип значений
+     * @throws IOException ошибка записи
+     */
+    public static void write(@NotNull final Grid grid, @NotNull final String file,
+                             @NotNull final Type type) throws IOException {
+        final int rows = grid.rowNumber();
+        final int cols = grid.colNumber();
+
+        try (FileChannel ch = FileChannel.open(Paths.get(file), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            final ByteBuffer h = ByteBuffer.wrap(header(type.descr, rows + ", " + cols));
+            final long length = h.remaining();
+            ChannelIO.writeFully(ch, h);
+
+            final long rowBytes = (long) cols * type.size;
+            final int step = GridFiles.rowsPerMap(rowBytes);
+            final double[] row = new double[cols];
+            final float[] frow = type == Type.float32 ? new float[cols] : null;
+
+            for (int i0 = 0; i0 < rows; i0 += step) {
+                final int n = Math.min(step, rows - i0);
+                final ByteBuffer b = ch.map(FileChannel.MapMode.READ_WRITE,
+                        length + rowBytes * i0, rowBytes * n).order(ByteOrder.LITTLE_ENDIAN);
+                final DoubleBuffer db = frow == null ? b.asDoubleBuffer() : null;
+                final FloatBuffer fb = frow != null ? b.asFloatBuffer() : null;
+                for (int i = i0; i < i0 + n; i++) {
+                    grid.getRow(i, row);
+                    if (db != null) {
+                        db.put(row);
+                    } else {
+                        for (int j = 0; j < cols; j++) {
+                            frow[j] = (float) row[j];
+                        }
+                        fb.put(frow);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Грид поверх файла .npy.
+     *
+     * <p>Файл отображается в память только для чтения: значения
+     * не копируются, грид изменять нельзя.</p>
+     *
+     * @param file     файл .npy с двумерным массивом {@code float64}
+     *                 или {@code float32} в порядке C
+     * @param geometry строитель с границами и шагами грида
+     * @return грид только для чтения
+     * @throws IOException ошибка чтения, неверный формат или размер
+     *                     массива не совпадает с размером грида
+     */
+    @NotNull
+    public static Grid map(@NotNull final String file, @NotNull final GridBuilder geometry)
+            throws IOException {
+        try (FileChannel ch = FileChannel.open(Paths.get(file), StandardOpenOption.READ)) {
+            final ByteBuffer pre = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+            ChannelIO.readFully(ch, pre, 0);
+            pre.flip();
+            for (byte m : MAGIC) {
+                if (pre.get() != m) {
+                    throw new IOException("not a npy file");
+                }
+            }
+            final int major = pre.get();
+            pre.get();
+            final long headerLength;
+            final int prefix;
+            if (major == 1) {
+                headerLength = pre.getShort() & 0xFFFF;
+                prefix = 10;
+            } else if (major == 2 || major == 3) {
+                headerLength = pre.getInt() & 0xFFFFFFFFL;
+                prefix = 12;
+            } else {
+                throw new IOException("npy version " + major + " is not supported");
+            }
+            if (headerLength > 1 << 20) {
+                throw new IOException("npy header is not valid");
+            }
+            final ByteBuffer hb = ByteBuffer.allocate((int) headerLength);
+            ChannelIO.readFully(ch, hb, prefix);
+            final String header = new String(hb.array(), StandardCharsets.ISO_8859_1);
+
+            final Matcher descr = DESCR.matcher(header);
+            final Matcher fortran = FORTRAN.matcher(header);
+            final Matcher shape = SHAPE.matcher(header);
+            if (!descr.find() || !fortran.find() || !shape.find()) {
+                throw new IOException("npy header is not valid");
+            }
+            if (fortran.group(1).equals("True")) {
+                throw new IOException("npy fortran order is not supported");
+            }
+            final ByteOrder order = descr.group(1).equals(">") ? ByteOrder.BIG_ENDIAN
+                    : ByteOrder.LITTLE_ENDIAN;
+            final String kind = descr.group(2) + descr.group(3);
+            if (!kind.equals("f8") && !kind.equals("f4")) {
+                throw new IOException("npy type " + kind + " is not supported");
+            }
+            final String[] dims = shape.group(1).split(",");
+            if (dims.length != 2 || dims[1].trim().isEmpty()) {
+                throw new IOException("npy array is not 2-D");
+            }
+            final int rows = Integer.parseInt(dims[0].trim());
+            final int cols = Integer.parseInt(dims[1].trim());
+
+            final int size = kind.equals("f8") ? 8 : 4;
+            final long offset = prefix + headerLength;
+            final long rowBytes = (long) cols * size;
+            if (ch.size() < offset + rowBytes * rows) {
+                throw new IOException("npy file is truncated");
+            }
+
+            final int step = GridFiles.rowsPerMap(rowBytes);
+            final int blocks = (rows + step - 1) / step;
+            final DoubleBuffer[] doubles = new DoubleBuffer[size == 8 ? blocks : 0];
+            final FloatBuffer[] floats = new FloatBuffer[size == 4 ? blocks : 0];
+            for (int b = 0; b < blocks; b++) {
+                final int n = Math.min(step, rows - b * step);
+                final ByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY,
+                        offset + rowBytes * b * step, rowBytes * n).order(order);
+                if (size == 8) {
+                    doubles[b] = buf.asDoubleBuffer();
+                } else {
+                    floats[b] = buf.asFloatBuffer();
+                }
+            }
+            final Grid grid = geometry.build(size == 8
+                    ? NpyStorage.ofDoubles(cols, step, doubles)
+                    : NpyStorage.ofFloats(cols, step, floats));
+            if (grid.rowNumber() != rows || grid.colNumber() != cols) {
+                throw new IOException("npy shape (" + rows + ", " + cols
+                        + ") does not match grid size");
+            }
+            return grid;
+        }
+    }
+
+    /**
+     * Запись результатов коллокации в архив .npz.
+     *
+     * <p>Массивы: {@code i}, {@code j} ({@code int32}) - номера узла,
+     * {@code lat}, {@code lon} - координаты в градусах, {@code model} -
+     * моделированная аномалия высоты, {@code value} и {@code error} -
+     * прогноз и его средняя квадратическая ошибка ({@code float64}).</p>
+     *
+     * @param nodes точки прогноза
+     * @param file  файл для записи
+     * @throws IOException ошибка записи
+     */
+    public static void writeNpz(@NotNull final Collection<PrognosisNode> nodes,
+                                @NotNull final String file) throws IOException {
+        final int n = nodes.size();
+        final int[] i = new int[n], j = new int[n];
+        final double[] lat = new double[n], lon = new double[n], model = new double[n],
+                value = new double[n], error = new double[n];
+        int p = 0;
+        for (PrognosisNode node : nodes) {
+            i[p] = node.getI();
+            j[p] = node.getJ();
+            lat[p] = node.latDeg();
+            lon[p] = node.lonDeg();
+            model[p] = node.model().value();
+            value[p] = node.signal().value();
+            error[p] = node.signal().error();
+            p++;
+        }
+        try (ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(Paths.get(file)), 1 << 16))) {
+            entry(zip, "i", array(i));
+            entry(zip, "j", array(j));
+            entry(zip, "lat", array(lat));
+            entry(zip, "lon", array(lon));
+            entry(zip, "model", array(model));
+            entry(zip, "value", array(value));
+            entry(zip, "error", array(error));
+        }
+    }
+
+    @NotNull
+    private static byte[] array(@NotNull final int[] a) {
+        final byte[] h = header("<i4", a.length + ",");
+        final ByteBuffer b = ByteBuffer.allocate(h.length + a.length * 4).order(ByteOrder.LITTLE_ENDIAN);
+        b.put(h).asIntBuffer().put(a);
+        return b.array();
+    }
+
+    @NotNull
+    private static byte[] array(@NotNull final double[] a) {
+        final byte[] h = header("<f8", a.length + ",");
+        final ByteBuffer b = ByteBuffer.allocate(h.length + a.length * 8).order(ByteOrder.LITTLE_ENDIAN);
+        b.put(h).asDoubleBuffer().put(a);
+        return b.array();
+    }
+
+    private static void entry(@NotNull final ZipOutputStream zip, @NotNull final String name,
+                              @NotNull final byte[] npy) throws IOException {
+        final CRC32 crc = new CRC32();
+        crc.update(npy);
+        final ZipEntry e = new ZipEntry(name + ".npy");
+        e.setMethod(ZipEntry.STORED);
+        e.setSize(npy.length);
+        e.setCompressedSize(npy.length);
+        e.setCrc(crc.getValue());
+        zip.putNextEntry(e);
+        zip.write(npy);
+        zip.closeEntry();
+    }
+
+    /**
+     * Заголовок .npy версии 1.0, выровненный до {@value #ALIGN} байт.
+     */
+    @NotNull
+    private static byte[] header(@NotNull final String descr, @NotNull final String shape) {
+        final StringBuilder dict = new StringBuilder(String.format(Locale.ROOT,
+                "{'descr': '%s', 'fortran_order': False, 'shape': (%s), }", descr, shape));
+        final int total = MAGIC.length + 4 + dict.length() + 1;
+        for (int k = 0; k < (ALIGN - total % ALIGN) % ALIGN; k++) {
+            dict.append(' ');
+        }
+        dict.append('\n');
+
+        final ByteBuffer b = ByteBuffer.allocate(MAGIC.length + 4 + dict.length())
+                .order(ByteOrder.LITTLE_ENDIAN);
+        b.put(MAGIC).put((byte) 1).put((byte) 0).putShort((short) dict.length())
+                .put(dict.toString().getBytes(StandardCharsets.ISO_8859_1));
+        return b.array();
+    }
+
+    /**
+     * Тип значений массива.
+     */
+    public enum Type {
+        /**
+         * Двойная точность, без потерь.
+         */
+        float64("<f8", 8),
+
+        /**
+         * Одинарная точность: вдвое меньший объем.
+         */
+        float32("<f4", 4);
+
+        @NotNull
+        private final String descr;
+        private final int size;
+
+        Type(@NotNull final String descr, final int size) {
+            this.descr = descr;
+            this.size = size;
+        }
+    }
+}
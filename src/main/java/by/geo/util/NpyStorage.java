@@ -0,0 +1,76 @@
+package by.geo.util;
+
+import by.geo.point.GridStorage;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+
+/**
+ * Хранилище значений грида в отображенном в память массиве .npy.
+ *
+ * <p>Массив разбит на блоки строк, каждый блок - отдельная
+ * отображенная область. Значения не копируются: чтение узла
+ * обращается к странице файла, массив {@code float32} приводится
+ * к {@code double} при чтении.</p>
+ */
+final class NpyStorage implements GridStorage {
+
+    private final int cols;
+    private final int rowsPerBlock;
+    private final DoubleBuffer[] doubles;
+    private final FloatBuffer[] floats;
+
+    private NpyStorage(final int cols, final int rowsPerBlock,
+                       final DoubleBuffer[] doubles, final FloatBuffer[] floats) {
+        this.cols = cols;
+        this.rowsPerBlock = rowsPerBlock;
+        this.doubles = doubles;
+        this.floats = floats;
+    }
+
+    @NotNull
+    static NpyStorage ofDoubles(final int cols, final int rowsPerBlock,
+                                @NotNull final DoubleBuffer[] blocks) {
+        return new NpyStorage(cols, rowsPerBlock, blocks, null);
+    }
+
+    @NotNull
+    static NpyStorage ofFloats(final int cols, final int rowsPerBlock,
+                               @NotNull final FloatBuffer[] blocks) {
+        return new NpyStorage(cols, rowsPerBlock, null, blocks);
+    }
+
+    @Override
+    public double get(final int i, final int j) {
+        final int b = i / rowsPerBlock;
+        final int k = (i - b * rowsPerBlock) * cols + j;
+        return doubles != null ? doubles[b].get(k) : floats[b].get(k);
+    }
+
+    /**
+     * @throws UnsupportedOperationException всегда: массив только для чтения
+     */
+    @Override
+    public void set(final int i, final int j, final double value) {
+        throw new UnsupportedOperationException("npy grid is read-only");
+    }
+
+    @Override
+    public void getRow(final int i, final int j, @NotNull final double[] dst,
+                       final int off, final int len) {
+        final int b = i / rowsPerBlock;
+        final int k = (i - b * rowsPerBlock) * cols + j;
+        if (doubles != null) {
+            final DoubleBuffer d = doubles[b];
+            for (int n = 0; n < len; n++) {
+                dst[off + n] = d.get(k + n);
+            }
+        } else {
+            final FloatBuffer f = floats[b];
+            for (int n = 0; n < len; n++) {
+                dst[off + n] = f.get(k + n);
+            }
+        }
+    }
+}
@@ -1,34 +1,103 @@
 package by.geo.util;
 
+import by.geo.math.SphereTree;
 import by.geo.point.Geodetic;
 import by.geo.point.Grid;
 import by.geo.point.PrognosisNode;
+import by.geo.ref.Ellipsoid;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.DoubleSummaryStatistics;
-import java.util.HashSet;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 public final class PrognosisNodes {
 
     @NotNull
-    private final Set<? extends Geodetic> base;
+    private final Collection<? extends Geodetic> base;
     @NotNull
     private final Grid grid;
+    @Nullable
+    private SphereTree tree;
+    private double radius;
 
-    public PrognosisNodes(@NotNull final Set<? extends Geodetic> geodetics,
+    public PrognosisNodes(@NotNull final Collection<? extends Geodetic> geodetics,
                           @NotNull final Grid grid) {
         this.base = geodetics;
         this.grid = grid;
     }
 
+    /**
+     * Отбирать только узлы, удаленные от ближайшей исходной точки
+     * не более чем на {@code radiusDeg}.
+     *
+     * @param radiusDeg сферическое расстояние в градусах
+     * @param ell       эллипсоид
+     * @return this
+     * @throws IllegalArgumentException если {@code radiusDeg} отрицательное
+     */
+    @NotNull
+    public PrognosisNodes setRadius(final double radiusDeg, @NotNull final Ellipsoid ell) {
+        if (!(radiusDeg >= 0)) {
+            throw new IllegalArgumentException("radius is not valid");
+        }
+        this.tree = new SphereTree(new ArrayList<>(base), ell);
+        this.radius = radiusDeg;
+        return this;
+    }
+
+    /**
+     * Получить окно грида, покрывающее исходные точки.
+     *
+     * <p>Окно разделяет значения с гридом, поэтому результаты,
+     * записанные в окно, сразу попадают в исходный грид.</p>
+     *
+     * @return окно грида для прогноза
+     */
+    @NotNull
+    public Grid window() {
+        final int[] b = bounds();
+        return grid.window(b[0], b[1], b[2], b[3]);
+    }
+
     /**
      * Получить список точек для прогноза из грида.
      *
+     * <p>Номера строк и столбцов узлов относятся к исходному гриду.
+     * Если задано расстояние ({@link #setRadius(double, Ellipsoid)}),
+     * узлы окна дальше него от всех исходных точек пропускаются.</p>
+     *
      * @return список точек для прогноза
      */
     @NotNull
     public Set<PrognosisNode> get() {
+        final int[] b = bounds();
+        final Grid w = grid.window(b[0], b[1], b[2], b[3]);
+        final SphereTree tree = this.tree;
+
+        final int cols = w.colNumber();
+
+        return w.nodes()
+                .mapToObj(k -> {
+                    final int i = b[0] + (int) (k / cols);
+                    final int j = b[1] + (int) (k % cols);
+                    return new PrognosisNode(grid.latDeg(i), grid.lonDeg(j), i, j,
+                            grid.getValue(i, j));
+                })
+                .filter(node -> tree == null || tree.isNear(node.latDeg(), node.lonDeg(), radius))
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * Границы области исходных точек в индексах грида.
+     *
+     * @return {@code {minI, minJ, maxI, maxJ}}, верхние границы не включаются
+     */
+    @NotNull
+    private int[] bounds() {
         final DoubleSummaryStatistics latStat = base.parallelStream()
                 .mapToDouble(Geodetic::latDeg).summaryStatistics();
         final DoubleSummaryStatistics lonStat = base.parallelStream()
@@ -42,30 +111,14 @@ public final class PrognosisNodes {
         final double dLat = grid.deltaLat();
         final double dLon = grid.deltaLon();
 
-        final double minLatGr = grid.latMin();
-        final double maxLatGr = grid.latMax();
-
-        final double minLonGr = grid.lonMin();
-        final double maxLonGr = grid.lonMax();
-
-        final int minI = (int) ((minLat - minLatGr) / dLat);
-        final int minJ = (int) ((minLon - minLonGr) / dLon);
+        final int minI = (int) ((minLat - grid.latMin()) / dLat);
+        final int minJ = (int) ((minLon - grid.lonMin()) / dLon);
 
         final int maxI = grid.rowNumber()
-                - (int) ((maxLatGr - maxLat) / dLat);
+                - (int) ((grid.latMax() - maxLat) / dLat);
         final int maxJ = grid.colNumber()
-                - (int) ((maxLonGr - maxLon) / dLon);
-
-        final Set<PrognosisNode> pred = new HashSet<>();
-        for (int i = minI; i < maxI; i++) {
-            for (int j = minJ; j < maxJ; j++) {
-                pred.add(new PrognosisNode(
-                        minLatGr + dLat * i,
-                        minLonGr + dLon * j,
-                        i, j,
-                        grid.getValue(i, j)));
-            }
-        }
-        return pred;
+                - (int) ((grid.lonMax() - maxLon) / dLon);
+
+        return new int[]{minI, minJ, maxI, maxJ};
     }
 }
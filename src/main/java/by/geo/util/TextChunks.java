@@ -0,0 +1,108 @@
+package by.geo.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Параллельный разбор текстового файла по частям.
+ *
+ * <p>Файл делится на части по границам строк, каждая часть
+ * отображается в память и разбирается независимо в общем пуле.
+ * Результаты возвращаются в порядке частей в файле, поэтому номер
+ * строки в файле равен номеру строки в части плюс число строк
+ * в предыдущих частях.</p>
+ */
+final class TextChunks {
+
+    /**
+     * Примерный размер части в байтах.
+     */
+    static final int CHUNK = 16 << 20;
+
+    private static final int PROBE = 4096;
+
+    private TextChunks() {
+    }
+
+    /**
+     * Разобрать файл.
+     *
+     * @param file   файл
+     * @param parser разбор части; буфер части начинается с начала строки
+     *               и заканчивается концом строки или файла
+     * @param <T>    тип результата разбора части
+     * @return результаты разбора частей в порядке следования в файле
+     * @throws IOException если файл не удалось прочитать
+     */
+    @NotNull
+    static <T> List<T> parse(@NotNull final Path file,
+                             @NotNull final Function<ByteBuffer, T> parser) throws IOException {
+        final List<ByteBuffer> chunks = new ArrayList<>();
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long[] bounds = bounds(ch);
+            for (int n = 0; n + 1 < bounds.length; n++) {
+                chunks.add(ch.map(FileChannel.MapMode.READ_ONLY, bounds[n], bounds[n + 1] - bounds[n]));
+            }
+        }
+        return IntStream.range(0, chunks.size()).parallel()
+                .mapToObj(n -> parser.apply(chunks.get(n)))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Границы частей: каждая внутренняя граница следует
+     * сразу за символом перевода строки.
+     */
+    @NotNull
+    private static long[] bounds(@NotNull final FileChannel ch) throws IOException {
+        final long size = ch.size();
+        final ByteBuffer probe = ByteBuffer.allocate(PROBE);
+        long[] bounds = new long[16];
+        int n = 0;
+        bounds[n++] = 0;
+
+        long start = 0;
+        while (size - start > CHUNK) {
+            long pos = start + CHUNK;
+            long end = size;
+            search:
+            while (pos < size) {
+                probe.clear();
+                final int read = ch.read(probe, pos);
+                if (read <= 0) {
+                    break;
+                }
+                for (int k = 0; k < read; k++) {
+                    if (probe.get(k) == '\n') {
+                        end = pos + k + 1;
+                        break search;
+                    }
+                }
+                pos += read;
+            }
+            if (n == bounds.length) {
+                bounds = Arrays.copyOf(bounds, n * 2);
+            }
+            bounds[n++] = end;
+            start = end;
+        }
+        if (start < size) {
+            if (n == bounds.length) {
+                bounds = Arrays.copyOf(bounds, n + 1);
+            }
+            bounds[n++] = size;
+        }
+        return Arrays.copyOf(bounds, n);
+    }
+}
@@ -0,0 +1,222 @@
+package by.geo.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Построчный разбор чисел в тексте ASCII.
+ *
+ * <p>Поля строки разделяются пробелами или табуляцией; пустые строки
+ * пропускаются. Десятичным разделителем может быть точка или запятая.
+ * Обычные десятичные записи (до 15 значащих цифр, порядок до 22)
+ * переводятся в {@code double} точно без создания объектов; остальные
+ * записи передаются в {@link Double#parseDouble(String)}.</p>
+ */
+final class TextScanner {
+
+    private static final double[] POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    private static final int MAX_DIGITS = 15;
+
+    @NotNull
+    private final ByteBuffer buf;
+    private final int limit;
+    private int pos;
+    private int line = -1;
+
+    /**
+     * @param buf текст; используется вся область от 0 до {@code limit()}
+     */
+    TextScanner(@NotNull final ByteBuffer buf) {
+        this.buf = buf;
+        this.limit = buf.limit();
+    }
+
+    /**
+     * Перейти к следующей непустой строке.
+     *
+     * @return {@code false}, если строк больше нет
+     */
+    boolean nextLine() {
+        if (line >= 0) {
+            while (pos < limit && buf.get(pos) != '\n') {
+                pos++;
+            }
+        }
+        while (pos < limit) {
+            final byte b = buf.get(pos);
+            if (b == '\n') {
+                pos++;
+            } else if (isSpace(b)) {
+                int p = pos;
+                while (p < limit && isSpace(buf.get(p))) {
+                    p++;
+                }
+                if (p < limit && buf.get(p) != '\n') {
+                    pos = p;
+                    line++;
+                    return true;
+                }
+                pos = p;
+            } else {
+                line++;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return номер текущей непустой строки, начиная с 0
+     */
+    int line() {
+        return line;
+    }
+
+    /**
+     * @return есть ли в текущей строке еще поле
+     */
+    boolean hasField() {
+        skipSpaces();
+        return pos < limit && buf.get(pos) != '\n';
+    }
+
+    /**
+     * Пропустить поле.
+     *
+     * @return {@code false}, если в строке больше нет полей
+     */
+    boolean skipField() {
+        if (!hasField()) {
+            return false;
+        }
+        while (pos < limit && !isDelimiter(buf.get(pos))) {
+            pos++;
+        }
+        return true;
+    }
+
+    /**
+     * Прочитать поле как число.
+     *
+     * @return число
+     * @throws NumberFormatException если поля нет или оно не является числом
+     */
+    double nextDouble() {
+        if (!hasField()) {
+            throw new NumberFormatException("field is missing");
+        }
+        final int start = pos;
+        int p = pos;
+
+        boolean negative = false;
+        byte b = buf.get(p);
+        if (b == '-' || b == '+') {
+            negative = b == '-';
+            p++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean any = false;
+        boolean point = false;
+
+        for (; p < limit; p++) {
+            b = buf.get(p);
+            if (b >= '0' && b <= '9') {
+                any = true;
+                if (digits < MAX_DIGITS) {
+                    if (mantissa != 0 || b != '0') {
+                        digits++;
+                    }
+                    mantissa = mantissa * 10 + (b - '0');
+                    if (point) {
+                        scale--;
+                    }
+                } else {
+                    digits++;
+                    if (!point) {
+                        scale++;
+                    }
+                }
+            } else if ((b == '.' || b == ',') && !point) {
+                point = true;
+            } else {
+                break;
+            }
+        }
+        int exp = 0;
+        if (any && p < limit && (buf.get(p) == 'e' || buf.get(p) == 'E')) {
+            int q = p + 1;
+            boolean expNegative = false;
+            if (q < limit && (buf.get(q) == '-' || buf.get(q) == '+')) {
+                expNegative = buf.get(q) == '-';
+                q++;
+            }
+            final int expStart = q;
+            while (q < limit && buf.get(q) >= '0' && buf.get(q) <= '9' && q - expStart < 6) {
+                exp = exp * 10 + (buf.get(q) - '0');
+                q++;
+            }
+            if (q > expStart) {
+                exp = expNegative ? -exp : exp;
+                p = q;
+            }
+        }
+        pos = p;
+
+        if (any && digits <= MAX_DIGITS && (p == limit || isDelimiter(buf.get(p)))) {
+            final int e = scale + exp;
+            if (e == 0 || mantissa == 0) {
+                return negative ? -(double) mantissa : mantissa;
+            }
+            if (e > 0 && e < POW10.length) {
+                final double v = mantissa * POW10[e];
+                return negative ? -v : v;
+            }
+            if (e < 0 && -e < POW10.length) {
+                final double v = mantissa / POW10[-e];
+                return negative ? -v : v;
+            }
+        }
+        return slow(start);
+    }
+
+    /**
+     * Разбор поля через {@link Double#parseDouble(String)}.
+     */
+    private double slow(final int start) {
+        int p = start;
+        while (p < limit && !isDelimiter(buf.get(p))) {
+            p++;
+        }
+        pos = p;
+        final char[] c = new char[p - start];
+        for (int k = 0; k < c.length; k++) {
+            final char ch = (char) buf.get(start + k);
+            c[k] = ch == ',' ? '.' : ch;
+        }
+        try {
+            return Double.parseDouble(new String(c));
+        } catch (NumberFormatException e) {
+            throw new NumberFormatException("bad number \"" + new String(c) + "\"");
+        }
+    }
+
+    private void skipSpaces() {
+        while (pos < limit && isSpace(buf.get(pos))) {
+            pos++;
+        }
+    }
+
+    private static boolean isSpace(final byte b) {
+        return b == ' ' || b == '\t' || b == '\r';
+    }
+
+    private static boolean isDelimiter(final byte b) {
+        return isSpace(b) || b == '\n';
+    }
+}